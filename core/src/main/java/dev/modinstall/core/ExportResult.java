@@ -0,0 +1,7 @@
+package dev.modinstall.core;
+
+/**
+ * What exporting a mods folder wrote. Unmatched jars are not on Modrinth and were bundled as
+ * overrides (modpack) or listed as unknown (modlist). Nothing is written when there are no jars.
+ */
+public record ExportResult(int mods, int unmatched) {}
@@ -0,0 +1,125 @@
+package dev.modinstall.core;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A lock on a mods folder shared by every ModInstall process, held through .modinstall.lock in it.
+ * Operations that only read the folder take it shared, operations that change jars or the manifest
+ * take it exclusively, so concurrent runs against the same folder wait for each other instead of
+ * racing. The OS releases it if a process dies.
+ *
+ * File locks belong to the whole JVM, so operations within one process first queue on a
+ * read-write lock per folder. The file lock is taken by the first of them and released by the last.
+ */
+final class FolderLock implements AutoCloseable {
+
+    static final String FILE_NAME = ".modinstall.lock";
+
+    /**
+     * The in-process side of one folder's lock. While holders > 0 all of them hold the
+     * read-write lock in the same mode, the one the file lock was taken in.
+     */
+    private static final class Held {
+        final ReentrantReadWriteLock threads = new ReentrantReadWriteLock();
+        FileChannel channel;
+        FileLock lock;
+        int holders;
+    }
+
+    private static final Map<Path, Held> HELD = new ConcurrentHashMap<>();
+
+    private final Held held;
+    private final Lock threadLock;
+
+    private FolderLock(Held held, Lock threadLock) {
+        this.held = held;
+        this.threadLock = threadLock;
+    }
+
+    /**
+     * For reading the folder. A folder that doesn't exist yet has nothing to protect.
+     */
+    static FolderLock shared(Path folder, Runnable waiting) throws IOException {
+        if (!Files.isDirectory(folder)) {
+            return new FolderLock(null, null);
+        }
+        return acquire(folder, true, waiting);
+    }
+
+    /**
+     * For changing the folder, created if missing
+     */
+    static FolderLock exclusive(Path folder, Runnable waiting) throws IOException {
+        Files.createDirectories(folder);
+        return acquire(folder, false, waiting);
+    }
+
+    /**
+     * Take the lock, calling waiting first if another process holds it. Operations of this
+     * process are queued for silently, they are the caller's own.
+     */
+    private static FolderLock acquire(Path folder, boolean shared, Runnable waiting) throws IOException {
+        Held held = HELD.computeIfAbsent(folder.toAbsolutePath().normalize(), k -> new Held());
+        Lock threadLock = shared ? held.threads.readLock() : held.threads.writeLock();
+        threadLock.lock();
+
+        try {
+            synchronized (held) {
+                if (held.holders == 0) {
+                    lockFile(folder, held, shared, waiting);
+                }
+                held.holders++;
+            }
+            return new FolderLock(held, threadLock);
+        } catch (IOException | RuntimeException e) {
+            threadLock.unlock();
+            throw e;
+        }
+    }
+
+    private static void lockFile(Path folder, Held held, boolean shared, Runnable waiting) throws IOException {
+        FileChannel channel = FileChannel.open(folder.resolve(FILE_NAME),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.tryLock(0, Long.MAX_VALUE, shared);
+            if (lock == null) {
+                waiting.run();
+                lock = channel.lock(0, Long.MAX_VALUE, shared);
+            }
+            held.channel = channel;
+            held.lock = lock;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (held == null) return;
+        try {
+            synchronized (held) {
+                if (--held.holders == 0) {
+                    try {
+                        held.lock.release();
+                    } finally {
+                        held.channel.close();
+                        held.channel = null;
+                        held.lock = null;
+                    }
+                }
+            }
+        } finally {
+            threadLock.unlock();
+        }
+    }
+}
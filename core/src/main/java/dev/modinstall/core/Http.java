@@ -0,0 +1,562 @@
+package dev.modinstall.core;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Everything a client sends over the network: API requests against the fastest healthy mirror
+ * with retries, coalesced and cached GETs, and verified downloads with CDN failover.
+ * One instance lives as long as its client, so lookups and mirror measurements carry over
+ * from one operation to the next.
+ */
+final class Http {
+
+    static final String USER_AGENT = "ModInstall/1.0.0 (github.com/modinstall)";
+
+    private static final String CDN_HOST = "cdn.modrinth.com";
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int READ_TIMEOUT_MS = 30_000;
+    private static final int BUFFER_SIZE = 65536;
+
+    // GET responses are kept on disk briefly so that e.g. "search" then "install" don't repeat lookups
+    private static final long RESPONSE_TTL_MS = 10 * 60 * 1000;
+    // A long-lived client keeps at most this many responses in memory
+    private static final int MAX_MEMOIZED = 2048;
+
+    /**
+     * A memoized GET response, in flight until body completes
+     */
+    private record Memo(CompletableFuture<String> body, long created) {
+        boolean expired(long now) {
+            return body.isDone() && now - created >= RESPONSE_TTL_MS;
+        }
+    }
+
+    /**
+     * An HTTP error response that retrying won't fix
+     */
+    static final class HttpStatusException extends IOException {
+        private final int status;
+
+        HttpStatusException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+
+        int status() {
+            return status;
+        }
+    }
+
+    // Requests are written against api and sent to the fastest healthy mirror
+    private final String api;
+    private final Mirrors apiMirrors;
+    private final Mirrors cdnMirrors;
+    private final Path cacheDir;
+    private final Consumer<String> warnings;
+
+    // GET responses keyed by method+URL, shared by every operation of the client for as long as
+    // they are on disk. An entry is in-flight until its future completes; failed requests are evicted.
+    private final Map<String, Memo> responses = new ConcurrentHashMap<>();
+    // The disk cache is swept of expired responses once per client, on first use
+    private final AtomicBoolean swept = new AtomicBoolean();
+
+    Http(List<String> apiBases, List<String> cdnBases, Path cacheDir, Consumer<String> warnings) {
+        this.api = apiBases.get(0).replaceFirst("/+$", "");
+        this.apiMirrors = new Mirrors(apiBases, USER_AGENT);
+        this.cdnMirrors = new Mirrors(cdnBases, USER_AGENT);
+        this.cacheDir = cacheDir;
+        this.warnings = warnings;
+    }
+
+    /**
+     * The API base URLs are built on, e.g. https://api.modrinth.com/v2
+     */
+    String api() {
+        return api;
+    }
+
+    JsonObject getJson(String urlString) throws IOException {
+        return JsonParser.parseString(get(urlString)).getAsJsonObject();
+    }
+
+    JsonArray getJsonArray(String urlString) throws IOException {
+        return JsonParser.parseString(get(urlString)).getAsJsonArray();
+    }
+
+    /**
+     * Coalesced GET: concurrent callers of the same URL share one in-flight request, and the
+     * response is memoized for RESPONSE_TTL_MS, so a long-lived client still sees new versions.
+     * Responses also stay in the on-disk cache as long so the next process can reuse them.
+     */
+    String get(String urlString) throws IOException {
+        String key = "GET " + urlString;
+        long now = System.currentTimeMillis();
+        Memo mine = new Memo(new CompletableFuture<>(), now);
+        Memo shared = responses.putIfAbsent(key, mine);
+        if (shared != null && shared.expired(now)) {
+            responses.remove(key, shared);
+            shared = responses.putIfAbsent(key, mine);
+        }
+
+        if (shared != null) {
+            try {
+                return shared.body().join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException io) throw io;
+                throw new IOException(e.getCause());
+            }
+        }
+
+        if (responses.size() > MAX_MEMOIZED) {
+            prune(now);
+        }
+
+        try {
+            String body = readCachedResponse(urlString);
+            if (body == null) {
+                body = fetchWithRetry("GET", urlString, null);
+                writeCachedResponse(urlString, body);
+            }
+            mine.body().complete(body);
+            return body;
+        } catch (IOException | RuntimeException e) {
+            // Don't memoize failures, a later caller may retry. Only "not found" stays not found.
+            if (!(e instanceof HttpStatusException status && status.status() == 404)) {
+                responses.remove(key, mine);
+            }
+            mine.body().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Bring the memo back under its bound: expired responses go first, then the oldest finished ones
+     */
+    private void prune(long now) {
+        responses.values().removeIf(memo -> memo.expired(now));
+        int excess = responses.size() - MAX_MEMOIZED * 3 / 4;
+        if (excess > 0) {
+            responses.entrySet().stream()
+                .filter(e -> e.getValue().body().isDone())
+                .sorted(Comparator.comparingLong(e -> e.getValue().created()))
+                .limit(excess)
+                .toList()
+                .forEach(e -> responses.remove(e.getKey(), e.getValue()));
+        }
+    }
+
+    /**
+     * Connect to the API mirrors ahead of the first request
+     */
+    void warmUpApi() {
+        apiMirrors.warmUp();
+    }
+
+    /**
+     * Connect to the download hosts ahead of the first download: the CDN mirrors if there are
+     * any, else Modrinth's CDN when the API is Modrinth's
+     */
+    void warmUpDownloads() {
+        if (cdnMirrors.size() > 0) {
+            cdnMirrors.warmUp();
+        } else if (String.valueOf(URI.create(api).getHost()).endsWith("modrinth.com")) {
+            new Mirrors(List.of("https://" + CDN_HOST), USER_AGENT).warmUp();
+        }
+    }
+
+    /**
+     * POST a JSON body. Not coalesced or memoized, the body is part of the request.
+     */
+    String post(String urlString, String jsonBody) throws IOException {
+        return fetchWithRetry("POST", urlString, jsonBody);
+    }
+
+    private Path cachedResponse(String urlString) throws IOException {
+        byte[] key = newDigest("SHA-1").digest(urlString.getBytes(StandardCharsets.UTF_8));
+        Path dir = cacheDir.resolve("http");
+        if (swept.compareAndSet(false, true)) {
+            sweepCachedResponses(dir);
+        }
+        return dir.resolve(HexFormat.of().formatHex(key) + ".json");
+    }
+
+    private String readCachedResponse(String urlString) {
+        try {
+            Path file = cachedResponse(urlString);
+            if (Files.exists(file)) {
+                if (!expired(file)) {
+                    return Files.readString(file);
+                }
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException ignored) {}
+        return null;
+    }
+
+    private void writeCachedResponse(String urlString, String body) {
+        try {
+            Path file = cachedResponse(urlString);
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".part");
+            try {
+                Files.writeString(temp, body);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException ignored) {
+            // The cache is an optimization only
+        }
+    }
+
+    private static boolean expired(Path file) throws IOException {
+        return System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis() >= RESPONSE_TTL_MS;
+    }
+
+    /**
+     * Delete expired responses, and temp files a killed process left behind. Responses are only
+     * read again for the same URL, so without this every search page ever made would stay.
+     */
+    private static void sweepCachedResponses(Path dir) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                try {
+                    if (expired(file)) {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (IOException ignored) {
+                    // Another process may be sweeping too
+                }
+            }
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * Send a request to the fastest healthy API mirror. A failing mirror is taken out of rotation
+     * and the next one is tried right away; only when every mirror failed do we back off and retry.
+     */
+    private String fetchWithRetry(String method, String urlString, String jsonBody) throws IOException {
+        int maxRetries = 3;
+        int retryDelay = 1000; // 1s start delay
+        IOException lastError = null;
+
+        for (int i = 0; i <= maxRetries; i++) {
+            long waitMs = retryDelay;
+            boolean retryable = false;
+
+            for (Mirrors.Endpoint endpoint : apiCandidates(urlString)) {
+                String target = endpoint == null ? urlString : endpoint.base() + urlString.substring(api.length());
+                try {
+                    long start = System.nanoTime();
+                    HttpURLConnection conn = (HttpURLConnection) new URL(target).openConnection();
+                    conn.setRequestMethod(method);
+                    conn.setRequestProperty("User-Agent", USER_AGENT);
+                    conn.setRequestProperty("Accept", "application/json");
+                    conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+                    conn.setReadTimeout(READ_TIMEOUT_MS);
+
+                    if (jsonBody != null) {
+                        conn.setDoOutput(true);
+                        conn.setRequestProperty("Content-Type", "application/json");
+                        try (OutputStream out = conn.getOutputStream()) {
+                            out.write(jsonBody.getBytes(StandardCharsets.UTF_8));
+                        }
+                    }
+
+                    int status = conn.getResponseCode();
+
+                    if (status == 429) {
+                        // Rate limited: wait as long as the server asks (Modrinth sends X-Ratelimit-Reset)
+                        long waitSeconds = Math.max(1, parseSeconds(conn.getHeaderField("Retry-After"),
+                            parseSeconds(conn.getHeaderField("X-Ratelimit-Reset"), retryDelay / 1000)));
+                        if (endpoint != null) endpoint.backOff(waitSeconds * 1000);
+                        waitMs = waitSeconds * 1000;
+                        retryable = true;
+                        lastError = new HttpStatusException(status, "Rate limited by Modrinth (HTTP 429). Please try again later.");
+                        continue;
+                    }
+
+                    if (status >= 500 && status < 600) {
+                        if (endpoint != null) endpoint.failure();
+                        retryable = true;
+                        lastError = new HttpStatusException(status, "Modrinth API is down (HTTP " + status + "). Please try again later.");
+                        continue;
+                    }
+
+                    if (status == 400 || status == 404 || status == 410) {
+                        // The request itself is wrong, another mirror won't help
+                        if (endpoint != null) endpoint.success((System.nanoTime() - start) / 1_000_000);
+                        throw new HttpStatusException(status, "API Error HTTP " + status + " for URL: " + urlString);
+                    }
+
+                    if (status >= 400) {
+                        // Refused by this mirror (e.g. a proxy's expired credentials), the next may answer
+                        if (endpoint != null) endpoint.failure();
+                        lastError = new HttpStatusException(status, "API Error HTTP " + status + " for URL: " + target);
+                        continue;
+                    }
+
+                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
+                        StringBuilder sb = new StringBuilder();
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            sb.append(line);
+                        }
+                        if (endpoint != null) endpoint.success((System.nanoTime() - start) / 1_000_000);
+                        return sb.toString();
+                    }
+                } catch (HttpStatusException e) {
+                    throw e;
+                } catch (IOException e) {
+                    // Network IO error, try the next mirror
+                    if (endpoint != null) endpoint.failure();
+                    retryable = true;
+                    lastError = e;
+                }
+            }
+
+            if (!retryable) {
+                // Every mirror refused the request, waiting won't change that
+                throw lastError;
+            }
+
+            if (i < maxRetries) {
+                if (lastError instanceof HttpStatusException status) {
+                    warnings.accept(status.status() == 429
+                        ? "Rate limited by Modrinth. Retrying in " + (waitMs / 1000) + "s..."
+                        : "Modrinth API unavailable (HTTP " + status.status() + "). Retrying in " + (waitMs / 1000) + "s...");
+                } else {
+                    warnings.accept("Connection failed (" + lastError.getMessage() + "). Retrying...");
+                }
+                try { Thread.sleep(waitMs); } catch (InterruptedException ignored) {}
+                retryDelay *= 2; // Exponential backoff
+            }
+        }
+        throw lastError;
+    }
+
+    /**
+     * API mirrors to try for a URL, or a single null for URLs outside the API
+     */
+    private List<Mirrors.Endpoint> apiCandidates(String urlString) {
+        if (!urlString.startsWith(api)) {
+            return Collections.singletonList(null);
+        }
+        return apiMirrors.ordered();
+    }
+
+    private static long parseSeconds(String header, long fallback) {
+        if (header == null) return fallback;
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    // === Downloads ===
+
+    /**
+     * Where a file can be downloaded from: for Modrinth CDN URLs the configured CDN mirrors,
+     * fastest healthy first, then the original URL
+     */
+    private List<String> downloadCandidates(String urlString) {
+        URI uri = URI.create(urlString);
+        if (cdnMirrors.size() == 0 || !CDN_HOST.equalsIgnoreCase(uri.getHost())) {
+            return List.of(urlString);
+        }
+        String rest = uri.getRawPath() + (uri.getRawQuery() != null ? "?" + uri.getRawQuery() : "");
+        List<String> candidates = new ArrayList<>();
+        for (Mirrors.Endpoint endpoint : cdnMirrors.ordered()) {
+            candidates.add(endpoint.base() + rest);
+        }
+        candidates.add(urlString);
+        return candidates;
+    }
+
+    /**
+     * Download into a temp file next to the target and move it into place, so an interrupted
+     * download never leaves a partial jar behind. The content is verified against the expected
+     * hashes (JCA algorithm name to hex digest, may be empty).
+     */
+    void download(String urlString, Path target, long expectedSize, Map<String, String> hashes,
+                  Progress progress) throws IOException {
+        // Fail over to the next mirror mid-install instead of giving up
+        IOException lastError = null;
+        for (String candidate : downloadCandidates(urlString)) {
+            Mirrors.Endpoint endpoint = cdnMirrors.ordered().stream()
+                .filter(e -> candidate.startsWith(e.base() + "/"))
+                .findFirst().orElse(null);
+            try {
+                long start = System.nanoTime();
+                downloadFrom(candidate, target, expectedSize, hashes, progress);
+                if (endpoint != null) endpoint.success((System.nanoTime() - start) / 1_000_000);
+                return;
+            } catch (IOException e) {
+                if (endpoint != null) endpoint.failure();
+                lastError = e;
+            }
+        }
+        throw lastError;
+    }
+
+    private void downloadFrom(String urlString, Path target, long expectedSize, Map<String, String> hashes,
+                              Progress progress) throws IOException {
+        Map<String, MessageDigest> digests = new LinkedHashMap<>();
+        for (String algorithm : hashes.keySet()) {
+            digests.put(algorithm, newDigest(algorithm));
+        }
+
+        URL url = new URL(urlString);
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestProperty("User-Agent", USER_AGENT);
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        conn.setReadTimeout(READ_TIMEOUT_MS);
+
+        String name = target.getFileName().toString();
+        int status = conn.getResponseCode();
+        if (status >= 400) {
+            throw new HttpStatusException(status, "Download failed (HTTP " + status + "): " + name);
+        }
+
+        progress.downloadStarted(name, expectedSize);
+        Path temp = Files.createTempFile(target.getParent(), name, ".part");
+        boolean done = false;
+        try {
+            try (InputStream in = conn.getInputStream();
+                 OutputStream out = Files.newOutputStream(temp)) {
+
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int bytesRead;
+
+                while ((bytesRead = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, bytesRead);
+                    for (MessageDigest digest : digests.values()) {
+                        digest.update(buffer, 0, bytesRead);
+                    }
+                    progress.downloadProgress(name, bytesRead);
+                }
+            }
+
+            for (Map.Entry<String, MessageDigest> digest : digests.entrySet()) {
+                String actual = HexFormat.of().formatHex(digest.getValue().digest());
+                if (!actual.equalsIgnoreCase(hashes.get(digest.getKey()))) {
+                    throw new IOException(digest.getKey() + " mismatch for " + name);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            done = true;
+            progress.downloadFinished(name, Files.size(target));
+        } catch (IOException e) {
+            if (!done) progress.downloadFailed(name, e);
+            throw e;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // === Hashing ===
+
+    /**
+     * Check an existing file against the strongest hash available
+     */
+    static boolean matchesHashes(Path file, Map<String, String> hashes) throws IOException {
+        for (String algorithm : List.of("SHA-512", "SHA-1")) {
+            String expected = hashes.get(algorithm);
+            if (expected != null) {
+                return expected.equalsIgnoreCase(hashFile(file, List.of(algorithm)).get(algorithm));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hash a file with several algorithms in one pass, read through a buffer. Leaves nothing open
+     * behind, so the file can be replaced right after, which a mapping would prevent on Windows
+     * until it is garbage collected.
+     */
+    static Map<String, String> hashFile(Path file, List<String> algorithms) throws IOException {
+        List<MessageDigest> digests = newDigests(algorithms);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                for (MessageDigest digest : digests) {
+                    digest.update(buffer.duplicate());
+                }
+                buffer.clear();
+            }
+        }
+        return hexDigests(algorithms, digests);
+    }
+
+    /**
+     * Like hashFile, in one memory-mapped pass. Faster on many large jars, but only for files
+     * that are read and left alone, like the jars of an export.
+     */
+    static Map<String, String> hashFileMapped(Path file, List<String> algorithms) throws IOException {
+        List<MessageDigest> digests = newDigests(algorithms);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                // A single mapping is limited to 2 GB
+                long length = Math.min(size - position, Integer.MAX_VALUE);
+                ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                for (MessageDigest digest : digests) {
+                    digest.update(mapped.duplicate());
+                }
+                position += length;
+            }
+        }
+        return hexDigests(algorithms, digests);
+    }
+
+    private static List<MessageDigest> newDigests(List<String> algorithms) throws IOException {
+        List<MessageDigest> digests = new ArrayList<>();
+        for (String algorithm : algorithms) {
+            digests.add(newDigest(algorithm));
+        }
+        return digests;
+    }
+
+    private static Map<String, String> hexDigests(List<String> algorithms, List<MessageDigest> digests) {
+        Map<String, String> hashes = new LinkedHashMap<>();
+        for (int i = 0; i < algorithms.size(); i++) {
+            hashes.put(algorithms.get(i), HexFormat.of().formatHex(digests.get(i).digest()));
+        }
+        return hashes;
+    }
+
+    private static MessageDigest newDigest(String algorithm) throws IOException {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Hash algorithm not available: " + algorithm, e);
+        }
+    }
+}
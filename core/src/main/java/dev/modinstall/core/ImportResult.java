@@ -0,0 +1,6 @@
+package dev.modinstall.core;
+
+/**
+ * What importing a modpack did. Files that failed were reported through Progress.warning.
+ */
+public record ImportResult(String name, int downloaded, int upToDate, int overrides, int failed) {}
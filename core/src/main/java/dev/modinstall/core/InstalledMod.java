@@ -0,0 +1,7 @@
+package dev.modinstall.core;
+
+/**
+ * A jar in a mods folder. projectId and slug are null for jars that were put there by hand,
+ * explicit is false for jars that are only there because another mod requires them.
+ */
+public record InstalledMod(String fileName, long size, String projectId, String slug, boolean explicit) {}
@@ -0,0 +1,199 @@
+package dev.modinstall.core;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * What a mod jar declares: its mod ID (null if unknown), every mod ID it provides (its own,
+ * Fabric "provides" aliases and all nested jars), and the required mod IDs it doesn't provide itself
+ */
+public record JarMeta(String modId, Set<String> provides, Set<String> dependencies) {
+
+    // Jar-in-jar depth followed when collecting provided mod IDs
+    private static final int MAX_JAR_NESTING = 4;
+
+    /**
+     * Reads an entry of a jar by name, or returns null if it doesn't exist
+     */
+    private interface EntrySource {
+        byte[] read(String name) throws IOException;
+    }
+
+    /**
+     * Read a jar's metadata. Unreadable jars yield an empty JarMeta.
+     */
+    public static JarMeta read(Path jarPath) {
+        try (JarFile jar = new JarFile(jarPath.toFile())) {
+            return read(name -> {
+                JarEntry entry = jar.getJarEntry(name);
+                if (entry == null) return null;
+                try (InputStream is = jar.getInputStream(entry)) {
+                    return is.readAllBytes();
+                }
+            }, 0);
+        } catch (Exception e) {
+            // Ignore errors silently in production
+            return new JarMeta(null, Set.of(), Set.of());
+        }
+    }
+
+    private static JarMeta read(EntrySource jar, int depth) throws IOException {
+        String modId = null;
+        Set<String> provides = new LinkedHashSet<>();
+        Set<String> deps = new LinkedHashSet<>();
+        List<String> nestedJars = new ArrayList<>();
+
+        // 1. Try Fabric/Quilt (fabric.mod.json)
+        byte[] fabricJson = jar.read("fabric.mod.json");
+
+        // 2. Try Forge/NeoForge (META-INF/mods.toml or neoforge.mods.toml)
+        byte[] forgeToml = jar.read("META-INF/mods.toml");
+        if (forgeToml == null) forgeToml = jar.read("META-INF/neoforge.mods.toml");
+
+        if (fabricJson != null) {
+            JsonObject json = JsonParser.parseString(new String(fabricJson, StandardCharsets.UTF_8)).getAsJsonObject();
+            modId = json.get("id").getAsString();
+            if (json.has("provides")) {
+                for (JsonElement alias : json.getAsJsonArray("provides")) {
+                    provides.add(alias.getAsString());
+                }
+            }
+            if (json.has("depends")) {
+                for (String depId : json.getAsJsonObject("depends").keySet()) {
+                    if (!isPlatformId(depId)) {
+                        deps.add(depId);
+                    }
+                }
+            }
+            // Jar-in-jar: "jars": [{"file": "META-INF/jars/x.jar"}]
+            if (json.has("jars")) {
+                for (JsonElement nested : json.getAsJsonArray("jars")) {
+                    nestedJars.add(nested.getAsJsonObject().get("file").getAsString());
+                }
+            }
+        } else if (forgeToml != null) {
+            modId = parseModsToml(new String(forgeToml, StandardCharsets.UTF_8), provides, deps);
+
+            // Jar-in-jar: META-INF/jarjar/metadata.json lists {"path": "META-INF/jarjar/x.jar"}
+            byte[] jarJar = jar.read("META-INF/jarjar/metadata.json");
+            if (jarJar != null) {
+                JsonObject json = JsonParser.parseString(new String(jarJar, StandardCharsets.UTF_8)).getAsJsonObject();
+                if (json.has("jars")) {
+                    for (JsonElement nested : json.getAsJsonArray("jars")) {
+                        nestedJars.add(nested.getAsJsonObject().get("path").getAsString());
+                    }
+                }
+            }
+        }
+
+        if (modId != null) {
+            provides.add(modId);
+        }
+
+        // Nested jars are read in memory, never extracted
+        if (depth < MAX_JAR_NESTING) {
+            for (String path : nestedJars) {
+                byte[] bytes = jar.read(path);
+                if (bytes == null) continue;
+                try {
+                    JarMeta nested = read(inMemoryJar(bytes), depth + 1);
+                    provides.addAll(nested.provides());
+                    deps.addAll(nested.dependencies());
+                } catch (Exception e) {
+                    // A broken nested jar doesn't hide what the outer jar declares
+                }
+            }
+        }
+
+        // Dependencies satisfied by the jar itself (e.g. between its nested modules) don't count
+        deps.removeAll(provides);
+        return new JarMeta(modId, provides, deps);
+    }
+
+    /**
+     * Parse a mods.toml: every [[mods]] modId is provided, required [[dependencies]] are collected.
+     * Returns the first mod ID, or null.
+     */
+    private static String parseModsToml(String toml, Set<String> provides, Set<String> deps) {
+        // Simple TOML line scanner
+        Pattern modIdPattern = Pattern.compile("modId\\s*=\\s*\"([^\"]+)\"");
+        String firstModId = null;
+        boolean inMods = false;
+        String pendingModId = null;
+        boolean pendingRequired = false;
+
+        for (String rawLine : toml.split("\\R")) {
+            String line = rawLine.trim();
+            if (line.startsWith("#") || line.isEmpty()) continue;
+
+            if (line.startsWith("[[mods]]")) {
+                inMods = true;
+            } else if (line.startsWith("[[dependencies")) {
+                // Detect [[dependencies.modid]]
+                inMods = false;
+                if (pendingModId != null && pendingRequired && !isPlatformId(pendingModId)) {
+                    deps.add(pendingModId);
+                }
+                pendingModId = null;
+                pendingRequired = false;
+            } else if (line.startsWith("[")) {
+                inMods = false;
+            } else if (line.startsWith("modId")) {
+                Matcher m = modIdPattern.matcher(line);
+                if (m.find()) {
+                    if (inMods) {
+                        provides.add(m.group(1));
+                        if (firstModId == null) firstModId = m.group(1);
+                    } else {
+                        pendingModId = m.group(1);
+                    }
+                }
+            } else if (line.startsWith("mandatory")) {
+                if (line.contains("true")) pendingRequired = true;
+            } else if (line.startsWith("type")) {
+                if (line.contains("required")) pendingRequired = true;
+            }
+        }
+        if (pendingModId != null && pendingRequired && !isPlatformId(pendingModId)) {
+            deps.add(pendingModId);
+        }
+        return firstModId;
+    }
+
+    /**
+     * A nested jar held in memory. Only the entries metadata parsing reads are kept.
+     */
+    private static EntrySource inMemoryJar(byte[] bytes) throws IOException {
+        Map<String, byte[]> entries = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(bytes))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String name = entry.getName();
+                if (name.equals("fabric.mod.json") || name.equals("META-INF/mods.toml")
+                        || name.equals("META-INF/neoforge.mods.toml") || name.equals("META-INF/jarjar/metadata.json")
+                        || name.endsWith(".jar")) {
+                    entries.put(name, zip.readAllBytes());
+                }
+            }
+        }
+        return entries::get;
+    }
+
+    private static boolean isPlatformId(String id) {
+        return id.equals("minecraft") || id.equals("java") ||
+               id.equals("fabricloader") || id.equals("forge") || id.equals("neoforge");
+    }
+}
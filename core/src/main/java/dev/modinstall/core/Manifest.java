@@ -0,0 +1,349 @@
+package dev.modinstall.core;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * What ModInstall knows about the jars in a mods folder, kept in .modinstall.json next to them.
+ *
+ * Every jar is either explicit (asked for by the user, or put there by hand) or a dependency.
+ * A dependency lists the explicit jars it was installed for as its roots; once the last root is
+ * gone it is an orphan. Remove and clean work from this file alone, jars are only opened when
+ * they appeared or changed outside of ModInstall.
+ */
+final class Manifest {
+
+    static final String FILE_NAME = ".modinstall.json";
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    static final class Entry {
+        String project; // Modrinth project ID, null for jars added by hand
+        String slug;
+        boolean explicit;
+        long size;
+        long modified;
+        Set<String> provides = new TreeSet<>();
+        Set<String> requires = new TreeSet<>(); // mod IDs
+        Set<String> dependencies = new TreeSet<>(); // file names
+        Set<String> roots = new TreeSet<>(); // file names of the explicit jars this one is needed by
+    }
+
+    // Version 1 folded every jar it found in as explicit
+    private static final int VERSION = 2;
+
+    private static final class Stored {
+        int version = VERSION;
+        Map<String, Entry> mods = new TreeMap<>();
+    }
+
+    private final Path file;
+    private final Map<String, Entry> mods;
+    private final Map<String, String> providers = new HashMap<>();
+
+    private Manifest(Path file, Map<String, Entry> mods) {
+        this.file = file;
+        this.mods = mods;
+        for (Map.Entry<String, Entry> mod : mods.entrySet()) {
+            for (String id : mod.getValue().provides) providers.putIfAbsent(id, mod.getKey());
+        }
+    }
+
+    /**
+     * Load the manifest of a mods folder. A missing or unreadable manifest starts out empty,
+     * sync() then folds in whatever is in the folder.
+     */
+    static Manifest load(Path modsFolder) {
+        Path file = modsFolder.resolve(FILE_NAME);
+        Map<String, Entry> mods = new TreeMap<>();
+        if (Files.exists(file)) {
+            try {
+                Stored stored = GSON.fromJson(Files.readString(file), Stored.class);
+                if (stored != null && stored.mods != null) {
+                    stored.mods.forEach((name, entry) -> {
+                        // Jars ModInstall didn't put there are folded in again, as a dependency where one is
+                        if (entry != null && (stored.version >= VERSION || entry.project != null)) {
+                            mods.put(name, entry);
+                        }
+                    });
+                }
+            } catch (IOException | JsonParseException ignored) {
+                // Rebuilt from the folder
+            }
+        }
+        return new Manifest(file, mods);
+    }
+
+    /**
+     * Bring the manifest in line with the folder. Only listing and file attributes are read;
+     * jars that are new or changed since they were recorded are read with the given reader.
+     * A new jar is folded in as a dependency if another jar requires a mod ID it provides, else
+     * as explicit, and the jars providing dependencies are linked up.
+     */
+    boolean sync(Function<Path, JarMeta> reader) throws IOException {
+        Map<String, BasicFileAttributes> present = new HashMap<>();
+        if (Files.isDirectory(file.getParent())) {
+            try (Stream<Path> files = Files.list(file.getParent())) {
+                for (Path jar : files.filter(p -> p.toString().endsWith(".jar")).toList()) {
+                    present.put(jar.getFileName().toString(), Files.readAttributes(jar, BasicFileAttributes.class));
+                }
+            }
+        }
+
+        boolean changed = false;
+        for (String name : new ArrayList<>(mods.keySet())) {
+            if (!present.containsKey(name)) {
+                forget(name);
+                changed = true;
+            }
+        }
+
+        Set<String> folded = new TreeSet<>();
+        Set<String> added = new TreeSet<>();
+        for (Map.Entry<String, BasicFileAttributes> jar : present.entrySet()) {
+            Entry entry = mods.get(jar.getKey());
+            if (entry == null || entry.size != jar.getValue().size()
+                    || entry.modified != jar.getValue().lastModifiedTime().toMillis()) {
+                JarMeta meta = reader.apply(file.getParent().resolve(jar.getKey()));
+                if (entry == null) {
+                    entry = new Entry();
+                    added.add(jar.getKey());
+                }
+                entry.size = jar.getValue().size();
+                entry.modified = jar.getValue().lastModifiedTime().toMillis();
+                Set<String> dropped = entry.provides;
+                entry.provides = new TreeSet<>(meta.provides());
+                dropped.removeAll(entry.provides);
+                unprovide(jar.getKey(), dropped);
+                entry.requires = new TreeSet<>(meta.dependencies());
+                mods.put(jar.getKey(), entry);
+                for (String id : entry.provides) providers.putIfAbsent(id, jar.getKey());
+                folded.add(jar.getKey());
+            }
+        }
+
+        // Decide and link after all new jars are known, they may depend on each other
+        for (String name : added) {
+            mods.get(name).explicit = !required(name);
+        }
+        for (String name : folded) {
+            for (String id : mods.get(name).requires) {
+                String provider = providers.get(id);
+                if (provider != null) link(name, provider);
+            }
+        }
+        for (Map.Entry<String, Entry> mod : mods.entrySet()) {
+            if (folded.contains(mod.getKey())) continue;
+            for (String id : mod.getValue().requires) {
+                String provider = providers.get(id);
+                if (provider != null && added.contains(provider)) link(mod.getKey(), provider);
+            }
+            // Links to jars folded in again still hold, their roots are passed on anew
+            for (String dep : new ArrayList<>(mod.getValue().dependencies)) {
+                if (added.contains(dep)) link(mod.getKey(), dep);
+            }
+        }
+
+        // New jars that only need each other, like a mod and its companion, must not look orphaned
+        List<String> stranded;
+        while (!(stranded = unreachable().stream().filter(added::contains).toList()).isEmpty()) {
+            String name = stranded.get(0);
+            markExplicit(name);
+            for (String dep : mods.get(name).dependencies) {
+                addRoot(dep, name, new HashSet<>());
+            }
+        }
+
+        if (changed || !folded.isEmpty()) save();
+        return changed || !folded.isEmpty();
+    }
+
+    /**
+     * Whether another jar requires a mod ID this one provides, or is already linked to it
+     */
+    private boolean required(String name) {
+        Entry entry = mods.get(name);
+        for (Map.Entry<String, Entry> other : mods.entrySet()) {
+            if (other.getKey().equals(name)) continue;
+            if (other.getValue().dependencies.contains(name)
+                    || !Collections.disjoint(other.getValue().requires, entry.provides)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    Entry get(String name) {
+        return mods.get(name);
+    }
+
+    Set<String> names() {
+        return Collections.unmodifiableSet(mods.keySet());
+    }
+
+    /**
+     * The jar providing a mod ID, or null
+     */
+    String providerOf(String id) {
+        return providers.get(id);
+    }
+
+    /**
+     * Record a jar ModInstall just put into the folder
+     */
+    void record(String name, String project, String slug, boolean explicit, JarMeta meta) throws IOException {
+        Path jar = file.getParent().resolve(name);
+        Entry entry = mods.computeIfAbsent(name, k -> new Entry());
+        entry.project = project;
+        entry.slug = slug;
+        entry.explicit |= explicit;
+        entry.size = Files.size(jar);
+        entry.modified = Files.getLastModifiedTime(jar).toMillis();
+        Set<String> dropped = entry.provides;
+        entry.provides = new TreeSet<>(meta.provides());
+        dropped.removeAll(entry.provides);
+        unprovide(name, dropped);
+        entry.requires = new TreeSet<>(meta.dependencies());
+        for (String id : entry.provides) providers.putIfAbsent(id, name);
+    }
+
+    /**
+     * Mark a jar as asked for by the user
+     */
+    void markExplicit(String name) {
+        Entry entry = mods.get(name);
+        if (entry != null) entry.explicit = true;
+    }
+
+    /**
+     * Record that a jar needs another one. The dependency and everything below it
+     * gain the jar's roots (or the jar itself, if it is explicit).
+     */
+    void link(String name, String dependency) {
+        Entry entry = mods.get(name);
+        if (entry == null || !mods.containsKey(dependency) || name.equals(dependency)) return;
+        entry.dependencies.add(dependency);
+        Set<String> roots = entry.explicit ? Set.of(name) : entry.roots;
+        for (String root : roots) {
+            addRoot(dependency, root, new HashSet<>());
+        }
+    }
+
+    private void addRoot(String name, String root, Set<String> visited) {
+        Entry entry = mods.get(name);
+        if (entry == null || name.equals(root) || !visited.add(name)) return;
+        entry.roots.add(root);
+        for (String dep : entry.dependencies) {
+            addRoot(dep, root, visited);
+        }
+    }
+
+    /**
+     * Drop a jar and return the dependencies left without any root, which should go with it.
+     * Those are dropped from the manifest as well.
+     */
+    List<String> remove(String name) {
+        List<String> rooted = mods.entrySet().stream()
+            .filter(e -> e.getValue().roots.contains(name))
+            .map(Map.Entry::getKey)
+            .toList();
+        forget(name);
+        List<String> orphans = new ArrayList<>();
+        for (String dep : rooted) {
+            Entry entry = mods.get(dep);
+            if (!entry.explicit && entry.roots.isEmpty()) {
+                orphans.add(dep);
+            }
+        }
+        orphans.forEach(this::forget);
+        return orphans;
+    }
+
+    /**
+     * Jars not reachable from any explicit jar over dependency links, in O(jars + links).
+     * Unlike root counts this also catches cycles and chains hanging off a stale link.
+     */
+    List<String> unreachable() {
+        Set<String> marked = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        for (Map.Entry<String, Entry> mod : mods.entrySet()) {
+            if (mod.getValue().explicit && marked.add(mod.getKey())) {
+                pending.push(mod.getKey());
+            }
+        }
+        while (!pending.isEmpty()) {
+            for (String dep : mods.get(pending.pop()).dependencies) {
+                if (mods.containsKey(dep) && marked.add(dep)) {
+                    pending.push(dep);
+                }
+            }
+        }
+
+        List<String> unreachable = new ArrayList<>();
+        for (String name : mods.keySet()) {
+            if (!marked.contains(name)) unreachable.add(name);
+        }
+        return unreachable;
+    }
+
+    /**
+     * Drop several jars at once, in a single pass over the rest
+     */
+    void removeAll(Collection<String> names) {
+        Set<String> gone = new HashSet<>(names);
+        mods.keySet().removeAll(gone);
+        providers.clear();
+        for (Entry entry : mods.values()) {
+            entry.dependencies.removeAll(gone);
+            entry.roots.removeAll(gone);
+        }
+        for (Map.Entry<String, Entry> mod : mods.entrySet()) {
+            for (String id : mod.getValue().provides) providers.putIfAbsent(id, mod.getKey());
+        }
+    }
+
+    private void forget(String name) {
+        Entry removed = mods.remove(name);
+        if (removed == null) return;
+        unprovide(name, removed.provides);
+        for (Entry entry : mods.values()) {
+            entry.dependencies.remove(name);
+            entry.roots.remove(name);
+        }
+    }
+
+    /**
+     * A jar no longer provides these mod IDs, point them at another jar that does, if any
+     */
+    private void unprovide(String name, Set<String> ids) {
+        for (String id : ids) {
+            if (name.equals(providers.get(id))) {
+                providers.remove(id);
+                mods.entrySet().stream()
+                    .filter(e -> !e.getKey().equals(name) && e.getValue().provides.contains(id))
+                    .findFirst()
+                    .ifPresent(e -> providers.put(id, e.getKey()));
+            }
+        }
+    }
+
+    void save() throws IOException {
+        Stored stored = new Stored();
+        stored.mods.putAll(mods);
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), FILE_NAME, ".part");
+        try {
+            Files.writeString(temp, GSON.toJson(stored));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
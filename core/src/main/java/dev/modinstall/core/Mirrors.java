@@ -0,0 +1,149 @@
+package dev.modinstall.core;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A set of interchangeable endpoints (API bases or download hosts). Each endpoint keeps a
+ * moving average of its latency and backs off after failures; callers try endpoints in
+ * order(), fastest healthy first, and report how each attempt went.
+ */
+final class Mirrors {
+
+    private static final int PROBE_TIMEOUT_MS = 3000;
+    private static final long MAX_COOLDOWN_MS = 60_000;
+
+    static final class Endpoint {
+        private final String base;
+        private volatile double latencyMs = -1; // unknown until measured
+        private volatile long downUntil;
+        private int failures;
+
+        private Endpoint(String base) {
+            this.base = base;
+        }
+
+        String base() {
+            return base;
+        }
+
+        boolean healthy() {
+            return System.currentTimeMillis() >= downUntil;
+        }
+
+        synchronized void success(long millis) {
+            failures = 0;
+            downUntil = 0;
+            latencyMs = latencyMs < 0 ? millis : latencyMs * 0.7 + millis * 0.3;
+        }
+
+        /**
+         * Take the endpoint out of rotation, for longer after each consecutive failure
+         */
+        synchronized void failure() {
+            failures++;
+            downUntil = System.currentTimeMillis() + Math.min(MAX_COOLDOWN_MS, 2500L << Math.min(failures, 5));
+        }
+
+        /**
+         * Take the endpoint out of rotation for as long as it asked (rate limiting)
+         */
+        synchronized void backOff(long millis) {
+            downUntil = System.currentTimeMillis() + millis;
+        }
+    }
+
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final String userAgent;
+    private volatile boolean probed;
+
+    Mirrors(List<String> bases, String userAgent) {
+        for (String base : bases) {
+            endpoints.add(new Endpoint(base.replaceFirst("/+$", "")));
+        }
+        this.userAgent = userAgent;
+    }
+
+    /**
+     * Parse a comma separated list of base URLs
+     */
+    static List<String> parse(String list) {
+        List<String> bases = new ArrayList<>();
+        if (list == null) return bases;
+        for (String base : list.split(",")) {
+            if (!base.isBlank()) bases.add(base.trim());
+        }
+        return bases;
+    }
+
+    int size() {
+        return endpoints.size();
+    }
+
+    /**
+     * Healthy endpoints by latency, then those cooling down (better to try them than fail).
+     * With more than one endpoint, all are probed in parallel on first use.
+     */
+    List<Endpoint> ordered() {
+        if (!probed && endpoints.size() > 1) {
+            probe();
+        }
+        List<Endpoint> healthy = new ArrayList<>();
+        List<Endpoint> down = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            (endpoint.healthy() ? healthy : down).add(endpoint);
+        }
+        healthy.sort(Comparator.comparingDouble(e -> e.latencyMs < 0 ? Double.MAX_VALUE : e.latencyMs));
+        down.sort(Comparator.comparingLong(e -> e.downUntil));
+        healthy.addAll(down);
+        return healthy;
+    }
+
+    /**
+     * Connect to every endpoint now rather than on the first request, so name lookup and TLS
+     * setup are done by the time it is sent and the connection waits in the keep-alive pool.
+     * With more than one endpoint this is the probe ordered() would otherwise wait for.
+     */
+    void warmUp() {
+        probe();
+    }
+
+    private synchronized void probe() {
+        if (probed) return;
+        List<CompletableFuture<Void>> probes = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            probes.add(CompletableFuture.runAsync(() -> probe(endpoint)));
+        }
+        try {
+            CompletableFuture.allOf(probes.toArray(new CompletableFuture[0])).get(PROBE_TIMEOUT_MS * 2L, TimeUnit.MILLISECONDS);
+        } catch (Exception ignored) {
+            // Whatever didn't answer in time stays unmeasured
+        }
+        probed = true;
+    }
+
+    /**
+     * Any answer below 500 means the host is up, the time to get it is its latency
+     */
+    private void probe(Endpoint endpoint) {
+        try {
+            long start = System.nanoTime();
+            HttpURLConnection conn = (HttpURLConnection) new URL(endpoint.base + "/").openConnection();
+            conn.setRequestMethod("HEAD");
+            conn.setRequestProperty("User-Agent", userAgent);
+            conn.setConnectTimeout(PROBE_TIMEOUT_MS);
+            conn.setReadTimeout(PROBE_TIMEOUT_MS);
+            int status = conn.getResponseCode();
+            if (status < 500) {
+                endpoint.success((System.nanoTime() - start) / 1_000_000);
+            } else {
+                endpoint.failure();
+            }
+        } catch (Exception e) {
+            endpoint.failure();
+        }
+    }
+}
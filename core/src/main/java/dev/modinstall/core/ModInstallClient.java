@@ -0,0 +1,955 @@
+package dev.modinstall.core;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * ModInstall as a library: search, resolve, install, list, remove and clean the mods of a
+ * project, import and export modpacks. Nothing is printed or detected, the project is described
+ * by ProjectSettings and every operation returns a CompletableFuture, reporting what it does
+ * through a Progress. Failures complete the future exceptionally with an IOException
+ * (ModNotFoundException if there is no such mod or no compatible version).
+ *
+ * A client keeps its state warm from one operation to the next: lookups in flight are shared,
+ * responses are memoized, mirror latencies are remembered and searches prefetch what an install
+ * of a hit needs. Use one client for many operations and close it at the end.
+ *
+ * <pre>
+ * try (ModInstallClient client = new ModInstallClient()) {
+ *     ProjectSettings project = new ProjectSettings("1.20.1", "fabric", Path.of("run/mods"));
+ *     client.install(project, "sodium", Progress.NONE).join();
+ * }
+ * </pre>
+ *
+ * Operations on the same mods folder take turns, with other threads and with other processes.
+ */
+public final class ModInstallClient implements AutoCloseable {
+
+    private static final Path HOME = Paths.get(System.getProperty("user.home"), ".modinstall");
+    private static final Properties CONFIG = loadConfig(HOME.resolve("config.properties"));
+
+    static final int MAX_PARALLEL = 8;
+    private static final int PREFETCH_HITS = 3;
+    private static final long PREFETCH_WAIT_MS = 3000;
+
+    // What install accepts besides search terms: Modrinth slugs (and project IDs, which have the
+    // same shape) are looked up directly, version IDs are 8 base62 characters
+    private static final Pattern SLUG = Pattern.compile("[\\w.+-]{2,64}");
+    private static final Pattern VERSION_ID = Pattern.compile("[0-9A-Za-z]{8}");
+
+    private final Http http;
+    private final Modpacks modpacks;
+    private final Path cacheDir;
+    private final ExecutorService executor;
+    private final Set<CompletableFuture<?>> prefetches = ConcurrentHashMap.newKeySet();
+    private volatile Consumer<String> warnings = message -> {};
+
+    /**
+     * A client set up like the command line. API and download mirrors come from the
+     * modinstall.api / modinstall.cdn system properties, MODINSTALL_API / MODINSTALL_CDN or
+     * ~/.modinstall/config.properties, comma separated; files and responses are cached in
+     * ~/.modinstall/cache.
+     */
+    public ModInstallClient() {
+        this(Mirrors.parse(setting("modinstall.api", "MODINSTALL_API", "https://api.modrinth.com/v2")),
+            Mirrors.parse(setting("modinstall.cdn", "MODINSTALL_CDN", null)),
+            HOME.resolve("cache"));
+    }
+
+    /**
+     * A client against the given mirrors. Requests are written against the first API base and
+     * sent to the fastest healthy one; cdn.modrinth.com stays the last resort for downloads.
+     */
+    public ModInstallClient(List<String> apiBases, List<String> cdnBases, Path cacheDir) {
+        if (apiBases.isEmpty()) {
+            throw new IllegalArgumentException("At least one API base URL is needed");
+        }
+        this.http = new Http(apiBases, cdnBases, cacheDir, message -> warnings.accept(message));
+        this.modpacks = new Modpacks(http);
+        this.cacheDir = cacheDir;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "modinstall-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Where warnings go that belong to the client rather than one operation, e.g. retries after
+     * Modrinth rate limited a request. Dropped unless set.
+     */
+    public void onWarning(Consumer<String> handler) {
+        this.warnings = Objects.requireNonNull(handler);
+    }
+
+    /**
+     * A system property, else an environment variable, else ~/.modinstall/config.properties, else the default
+     */
+    private static String setting(String property, String env, String defaultValue) {
+        String value = System.getProperty(property);
+        if (value == null || value.isBlank()) value = System.getenv(env);
+        if (value == null || value.isBlank()) value = CONFIG.getProperty(property);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    private static Properties loadConfig(Path file) {
+        Properties config = new Properties();
+        if (Files.exists(file)) {
+            try (InputStream is = Files.newInputStream(file)) {
+                config.load(is);
+            } catch (IOException ignored) {}
+        }
+        return config;
+    }
+
+    // === Operations ===
+
+    /**
+     * One page of mods matching the query for the project's loader and Minecraft version.
+     * The top hits' versions and dependencies and the next page are fetched in the background,
+     * so the install or page that usually follows doesn't wait on them.
+     */
+    public CompletableFuture<SearchPage> search(ProjectSettings project, String query, int limit, int offset) {
+        return async(() -> searchMods(project, query, limit, offset));
+    }
+
+    /**
+     * The version of a mod install would pick, without downloading anything. Accepts what
+     * install accepts.
+     */
+    public CompletableFuture<ModVersion> resolve(ProjectSettings project, String mod) {
+        return async(() -> resolveMod(project, mod, Progress.NONE));
+    }
+
+    /**
+     * Install a mod and every required dependency no jar in the folder provides yet.
+     * mod is a slug, project ID, slug@version (number or ID), version ID or a search term.
+     * Completes with the versions that were downloaded, the mod itself first unless it was
+     * already there.
+     */
+    public CompletableFuture<List<ModVersion>> install(ProjectSettings project, String mod, Progress progress) {
+        return async(() -> {
+            // Look the mod up while the folder is locked and its jars are indexed
+            progress.resolving(mod);
+            CompletableFuture<ModVersion> version = async(() -> resolveMod(project, mod, progress));
+            try (FolderLock lock = lock(project, true, progress)) {
+                Manifest manifest = manifest(project);
+                List<ModVersion> installed = new ArrayList<>();
+                try {
+                    installVersion(project, manifest, get(version), null, progress, new HashMap<>(), installed);
+                } finally {
+                    // Once for the whole graph, whatever got installed before a failure included
+                    manifest.save();
+                }
+                return installed;
+            }
+        });
+    }
+
+    /**
+     * Install the same mods into many projects at once. Projects are grouped by loader and
+     * Minecraft version: each group's dependencies are resolved once, every file is downloaded
+     * once into the cache and all mods folders are filled in parallel. Completes with the file
+     * names added to each project.
+     */
+    public CompletableFuture<Map<ProjectSettings, List<String>>> installAll(Collection<ProjectSettings> projects,
+                                                                           List<String> mods, Progress progress) {
+        return async(() -> installWorkspace(projects, mods, progress));
+    }
+
+    /**
+     * The jars in the mods folder, by file name
+     */
+    public CompletableFuture<List<InstalledMod>> list(ProjectSettings project, Progress progress) {
+        return async(() -> {
+            try (FolderLock lock = lock(project, false, progress)) {
+                if (!Files.isDirectory(project.modsFolder())) {
+                    return List.of();
+                }
+                Manifest manifest = manifest(project);
+                List<InstalledMod> mods = new ArrayList<>();
+                for (String name : new TreeSet<>(manifest.names())) {
+                    Manifest.Entry entry = manifest.get(name);
+                    mods.add(new InstalledMod(name, entry.size, entry.project, entry.slug, entry.explicit));
+                }
+                return mods;
+            }
+        });
+    }
+
+    /**
+     * Remove a jar, along with the dependencies nothing else installed needs anymore.
+     * Completes with the removed file names, the given one first.
+     */
+    public CompletableFuture<List<String>> remove(ProjectSettings project, String fileName, Progress progress) {
+        return async(() -> {
+            try (FolderLock lock = lock(project, true, progress)) {
+                Manifest manifest = manifest(project);
+                if (manifest.get(fileName) == null) {
+                    throw new ModNotFoundException("No mod installed as " + fileName);
+                }
+                // The target mod, then the dependencies it was the last root of
+                List<String> removed = new ArrayList<>();
+                removed.add(fileName);
+                removed.addAll(manifest.remove(fileName));
+                for (String name : removed) {
+                    Files.deleteIfExists(project.modsFolder().resolve(name));
+                }
+                manifest.save();
+                return removed;
+            }
+        });
+    }
+
+    /**
+     * Remove every jar that isn't reachable from the mods that were asked for (or put there by
+     * hand), so orphaned chains go in one pass. Completes with the unused file names; with
+     * dryRun they are only reported.
+     */
+    public CompletableFuture<List<String>> clean(ProjectSettings project, boolean dryRun, Progress progress) {
+        return async(() -> {
+            try (FolderLock lock = lock(project, !dryRun, progress)) {
+                Manifest manifest = manifest(project);
+                List<String> unused = manifest.unreachable();
+                if (dryRun || unused.isEmpty()) {
+                    return unused;
+                }
+                for (String name : unused) {
+                    Files.deleteIfExists(project.modsFolder().resolve(name));
+                }
+                manifest.removeAll(unused);
+                manifest.save();
+                return unused;
+            }
+        });
+    }
+
+    /**
+     * Reproduce a Modrinth modpack (.mrpack) in the project's run folder. Files are downloaded in
+     * parallel and verified against the pack's hashes; files already present and matching are skipped.
+     */
+    public CompletableFuture<ImportResult> importPack(ProjectSettings project, Path packFile, Progress progress) {
+        return async(() -> {
+            try (FolderLock lock = lock(project, true, progress)) {
+                return modpacks.importPack(project, packFile, progress);
+            }
+        });
+    }
+
+    /**
+     * Write the mods folder as a Modrinth modpack (.mrpack, .zip) or a JSON modlist (.json),
+     * chosen by the output's extension
+     */
+    public CompletableFuture<ExportResult> export(ProjectSettings project, Path output, Progress progress) {
+        return async(() -> {
+            try (FolderLock lock = lock(project, false, progress)) {
+                return modpacks.export(project, output, progress);
+            }
+        });
+    }
+
+    /**
+     * Connect to the API and download hosts in the background, so the first request doesn't pay
+     * for name lookup and TLS setup. Worth calling as early as possible, before the project is known.
+     */
+    public CompletableFuture<Void> warmUp() {
+        return CompletableFuture.allOf(
+            async(() -> { http.warmUpApi(); return null; }),
+            async(() -> { http.warmUpDownloads(); return null; }));
+    }
+
+    /**
+     * Start the lookups installing mod will make that don't depend on the project: the project
+     * behind a slug or ID, a pinned version, a version ID. Lets an install get going before the
+     * project is known. Failures are left for the install to report.
+     */
+    public void prefetch(String mod) {
+        int at = mod.indexOf('@');
+        if (at > 0) {
+            String slug = mod.substring(0, at);
+            String pin = mod.substring(at + 1);
+            background(() -> http.get(projectUrl(slug)));
+            background(() -> http.get(pinnedUrl(slug, pin)));
+            return;
+        }
+        if (VERSION_ID.matcher(mod).matches()) {
+            background(() -> http.get(http.api() + "/project/"
+                + http.getJson(http.api() + "/version/" + mod).get("project_id").getAsString()));
+        }
+        if (SLUG.matcher(mod).matches()) {
+            background(() -> http.get(projectUrl(mod)));
+        }
+    }
+
+    /**
+     * Bring the mods folder's manifest up to date in the background, opening the jars that are new
+     * or changed. Every operation does this itself; starting it early takes it off their path.
+     */
+    public CompletableFuture<Void> index(ProjectSettings project) {
+        return async(() -> {
+            try (FolderLock lock = lock(project, false, Progress.NONE)) {
+                if (Files.isDirectory(project.modsFolder())) {
+                    manifest(project);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Give background lookups a moment to land in the disk cache, where the next process finds
+     * them, and stop the client's threads
+     */
+    @Override
+    public void close() {
+        try {
+            CompletableFuture.allOf(prefetches.toArray(new CompletableFuture[0])).get(PREFETCH_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception ignored) {
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private <T> CompletableFuture<T> async(Callable<T> operation) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return operation.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Wait for a task, rethrowing what it failed with
+     */
+    static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // === Folder state ===
+
+    private static FolderLock lock(ProjectSettings project, boolean exclusive, Progress progress) throws IOException {
+        Runnable waiting = () -> progress.waiting(project.modsFolder());
+        return exclusive ? FolderLock.exclusive(project.modsFolder(), waiting) : FolderLock.shared(project.modsFolder(), waiting);
+    }
+
+    /**
+     * The mods folder's manifest, synced with the folder. Only jars that are new or changed
+     * since the last operation get opened.
+     */
+    private static Manifest manifest(ProjectSettings project) throws IOException {
+        Manifest manifest = Manifest.load(project.modsFolder());
+        manifest.sync(JarMeta::read);
+        return manifest;
+    }
+
+    /**
+     * The installed jar that satisfies a Modrinth project, including nested jars, or null.
+     * Mod IDs usually match the slug, with '_' where the slug has '-'.
+     */
+    private static String providerOf(Manifest manifest, String slug) {
+        for (String id : modIds(slug)) {
+            String provider = manifest.providerOf(id);
+            if (provider != null) return provider;
+        }
+        return null;
+    }
+
+    private static List<String> modIds(String slug) {
+        String id = slug.toLowerCase();
+        return List.of(id, id.replace('-', '_'));
+    }
+
+    // === Install ===
+
+    /**
+     * Install a mod, as a dependency of the given jar or, if that is null, because it was asked for.
+     * visited maps the project IDs this install already went through to their jars, so projects
+     * that require each other are walked once.
+     */
+    private void installMod(ProjectSettings project, Manifest manifest, String mod, String requiredBy,
+                            Progress progress, Map<String, String> visited, List<ModVersion> installed) throws IOException {
+        progress.resolving(mod);
+        installVersion(project, manifest, resolveMod(project, mod, progress), requiredBy, progress, visited, installed);
+    }
+
+    private void installVersion(ProjectSettings project, Manifest manifest, ModVersion version, String requiredBy,
+                                Progress progress, Map<String, String> visited, List<ModVersion> installed) throws IOException {
+        progress.resolved(version);
+        visited.put(version.projectId(), version.fileName());
+
+        Path target = project.modsFolder().resolve(version.fileName());
+
+        // 1. Check if already installed. Its dependencies are still checked, one may have been deleted.
+        if (Files.exists(target)) {
+            if (requiredBy == null) {
+                manifest.markExplicit(version.fileName());
+            } else {
+                manifest.link(requiredBy, version.fileName());
+            }
+            progress.alreadyInstalled(version);
+        } else {
+            // 2. Download the mod itself first, so the libraries it bundles are known
+            http.download(version.url(), target, version.size(), version.hashes(), progress);
+            manifest.record(version.fileName(), version.projectId(), version.slug(), requiredBy == null,
+                JarMeta.read(target));
+            if (requiredBy != null) {
+                manifest.link(requiredBy, version.fileName());
+            }
+            installed.add(version);
+            progress.installed(version);
+        }
+
+        // 3. Install required dependencies that no installed jar provides yet
+        boolean hasDeps = false;
+        for (String depProjectId : version.dependencies()) {
+            String seen = visited.get(depProjectId);
+            if (seen != null) {
+                manifest.link(version.fileName(), seen);
+                continue;
+            }
+            try {
+                String depSlug = projectSlug(depProjectId);
+                String provider = providerOf(manifest, depSlug);
+                if (provider != null) {
+                    manifest.link(version.fileName(), provider);
+                    progress.dependencyProvided(version, depSlug, provider);
+                    continue;
+                }
+                if (!hasDeps) {
+                    progress.installingDependencies(version);
+                    hasDeps = true;
+                }
+                installMod(project, manifest, depSlug, version.fileName(), progress, visited, installed);
+            } catch (ModNotFoundException e) {
+                progress.warning(e.getMessage());
+            } catch (Exception e) {
+                progress.warning("Could not resolve dependency: " + depProjectId);
+            }
+        }
+    }
+
+    // === Resolve ===
+
+    /**
+     * Find a mod and its latest compatible version.
+     *
+     * Accepts slug@version (version number or ID) and bare version IDs, which pin a version, and
+     * slugs or project IDs, which go straight to the project's versions. Only names that are
+     * neither fall back to a search.
+     */
+    private ModVersion resolveMod(ProjectSettings project, String mod, Progress progress) throws IOException {
+        int at = mod.indexOf('@');
+        if (at > 0) {
+            return resolvePinned(project, mod.substring(0, at), mod.substring(at + 1), progress);
+        }
+
+        if (VERSION_ID.matcher(mod).matches()) {
+            try {
+                JsonObject version = http.getJson(http.api() + "/version/" + mod);
+                JsonObject versionProject = http.getJson(http.api() + "/project/" + version.get("project_id").getAsString());
+                warnIfIncompatible(project, versionProject, version, progress);
+                return toModVersion(versionProject, version);
+            } catch (Http.HttpStatusException e) {
+                if (e.status() != 404) throw e;
+                // Not a version ID after all, most likely a slug of the same shape
+            }
+        }
+
+        if (SLUG.matcher(mod).matches()) {
+            // The project itself is only needed for its name, fetch it alongside
+            CompletableFuture<JsonObject> modProject = fetchProject(mod);
+            try {
+                JsonArray versions = http.getJsonArray(versionsUrl(project, mod));
+                if (versions.isEmpty()) {
+                    throw new ModNotFoundException("No compatible version of " + mod + " found for "
+                        + project.loader() + " " + project.minecraftVersion());
+                }
+                return toModVersion(get(modProject), versions.get(0).getAsJsonObject());
+            } catch (Http.HttpStatusException e) {
+                if (e.status() != 404) throw e;
+            }
+        }
+
+        // Search for the mod
+        JsonObject searchResult = http.getJson(searchUrl(project, mod, 5, 0));
+        JsonArray hits = searchResult.getAsJsonArray("hits");
+
+        if (hits.isEmpty()) {
+            throw new ModNotFoundException("No mod found for '" + mod + "' on " + project.loader() + " " + project.minecraftVersion());
+        }
+
+        // Get the first matching mod
+        JsonObject hit = hits.get(0).getAsJsonObject();
+        String projectId = hit.get("project_id").getAsString();
+        String title = hit.get("title").getAsString();
+
+        // Get versions for this mod
+        JsonArray versions = http.getJsonArray(versionsUrl(project, projectId));
+
+        if (versions.isEmpty()) {
+            throw new ModNotFoundException("No compatible version of " + title + " found for "
+                + project.loader() + " " + project.minecraftVersion());
+        }
+
+        // Get the latest version
+        return toModVersion(hit, versions.get(0).getAsJsonObject());
+    }
+
+    /**
+     * A specific version of a project, by version number or ID
+     */
+    private ModVersion resolvePinned(ProjectSettings project, String slug, String pin, Progress progress) throws IOException {
+        CompletableFuture<JsonObject> pinnedProject = fetchProject(slug);
+        try {
+            JsonObject version = http.getJson(pinnedUrl(slug, pin));
+            warnIfIncompatible(project, get(pinnedProject), version, progress);
+            return toModVersion(get(pinnedProject), version);
+        } catch (Http.HttpStatusException e) {
+            if (e.status() != 404) throw e;
+            throw new ModNotFoundException("No version '" + pin + "' of " + slug + " found");
+        }
+    }
+
+    private CompletableFuture<JsonObject> fetchProject(String idOrSlug) {
+        return async(() -> http.getJson(projectUrl(idOrSlug)));
+    }
+
+    /**
+     * A pinned version is installed as asked, but say so if it wasn't made for this project
+     */
+    private static void warnIfIncompatible(ProjectSettings project, JsonObject modProject, JsonObject version, Progress progress) {
+        JsonArray loaders = version.getAsJsonArray("loaders");
+        JsonArray gameVersions = version.getAsJsonArray("game_versions");
+        if ((loaders != null && !loaders.contains(new JsonPrimitive(project.loader())))
+                || (gameVersions != null && !gameVersions.contains(new JsonPrimitive(project.minecraftVersion())))) {
+            progress.warning(modProject.get("title").getAsString() + " " + version.get("version_number").getAsString()
+                + " is not marked for " + project.loader() + " " + project.minecraftVersion());
+        }
+    }
+
+    /**
+     * The primary file of a version. modProject is a project or a search hit, both have title and slug.
+     */
+    private static ModVersion toModVersion(JsonObject modProject, JsonObject version) throws ModNotFoundException {
+        String title = modProject.get("title").getAsString();
+        JsonArray files = version.getAsJsonArray("files");
+
+        // Find primary file
+        JsonObject primaryFile = null;
+        for (JsonElement fileEl : files) {
+            JsonObject file = fileEl.getAsJsonObject();
+            if (file.get("primary").getAsBoolean()) {
+                primaryFile = file;
+                break;
+            }
+        }
+        if (primaryFile == null && !files.isEmpty()) {
+            primaryFile = files.get(0).getAsJsonObject();
+        }
+
+        if (primaryFile == null) {
+            throw new ModNotFoundException("No downloadable file found for " + title);
+        }
+
+        return new ModVersion(version.get("project_id").getAsString(), modProject.get("slug").getAsString(), title,
+            version.get("id").getAsString(), version.get("version_number").getAsString(),
+            primaryFile.get("filename").getAsString(), primaryFile.get("url").getAsString(),
+            primaryFile.get("size").getAsLong(), fileHashes(primaryFile), requiredDependencies(version));
+    }
+
+    /**
+     * The hashes Modrinth lists for a file, under the names MessageDigest knows them by
+     */
+    private static Map<String, String> fileHashes(JsonObject file) {
+        Map<String, String> hashes = new LinkedHashMap<>();
+        JsonObject listed = file.getAsJsonObject("hashes");
+        if (listed != null) {
+            if (listed.has("sha512")) hashes.put("SHA-512", listed.get("sha512").getAsString());
+            if (listed.has("sha1")) hashes.put("SHA-1", listed.get("sha1").getAsString());
+        }
+        return hashes;
+    }
+
+    private String projectUrl(String idOrSlug) throws IOException {
+        return http.api() + "/project/" + URLEncoder.encode(idOrSlug, "UTF-8");
+    }
+
+    private String pinnedUrl(String slug, String pin) throws IOException {
+        return projectUrl(slug) + "/version/" + URLEncoder.encode(pin, "UTF-8");
+    }
+
+    /**
+     * Search URL restricted to mods for the project's loader and Minecraft version
+     */
+    private String searchUrl(ProjectSettings project, String query, int limit, int offset) throws IOException {
+        // Force project_type:mod
+        String facets = "[[\"categories:" + project.loader() + "\"],[\"versions:" + project.minecraftVersion()
+            + "\"],[\"project_type:mod\"]]";
+        return http.api() + "/search?query=" + URLEncoder.encode(query, "UTF-8")
+            + "&facets=" + URLEncoder.encode(facets, "UTF-8")
+            + "&limit=" + limit
+            + (offset > 0 ? "&offset=" + offset : "");
+    }
+
+    /**
+     * Versions of a Modrinth project compatible with the project's loader and Minecraft version, newest first
+     */
+    private String versionsUrl(ProjectSettings project, String projectId) throws IOException {
+        String loaders = "[\"" + project.loader() + "\"]";
+        String gameVersions = "[\"" + project.minecraftVersion() + "\"]";
+        return http.api() + "/project/" + URLEncoder.encode(projectId, "UTF-8") + "/version"
+            + "?loaders=" + URLEncoder.encode(loaders, "UTF-8")
+            + "&game_versions=" + URLEncoder.encode(gameVersions, "UTF-8");
+    }
+
+    /**
+     * Required dependencies of a version that point at a project
+     */
+    private static List<String> requiredDependencies(JsonObject version) {
+        List<String> dependencies = new ArrayList<>();
+        JsonArray deps = version.getAsJsonArray("dependencies");
+        if (deps != null) {
+            for (JsonElement depEl : deps) {
+                JsonObject dep = depEl.getAsJsonObject();
+                if ("required".equals(dep.get("dependency_type").getAsString())
+                        && dep.has("project_id") && !dep.get("project_id").isJsonNull()) {
+                    dependencies.add(dep.get("project_id").getAsString());
+                }
+            }
+        }
+        return dependencies;
+    }
+
+    private String projectSlug(String projectId) throws IOException {
+        return http.getJson(http.api() + "/project/" + projectId).get("slug").getAsString();
+    }
+
+    // === Search ===
+
+    private SearchPage searchMods(ProjectSettings project, String query, int limit, int offset) throws IOException {
+        JsonObject result = http.getJson(searchUrl(project, query, limit, offset));
+        List<SearchHit> hits = new ArrayList<>();
+        for (JsonElement hitEl : result.getAsJsonArray("hits")) {
+            JsonObject hit = hitEl.getAsJsonObject();
+            hits.add(new SearchHit(hit.get("project_id").getAsString(), hit.get("slug").getAsString(),
+                hit.get("title").getAsString(), hit.get("description").getAsString(), hit.get("downloads").getAsLong()));
+        }
+        int total = result.get("total_hits").getAsInt();
+
+        for (int i = 0; i < Math.min(PREFETCH_HITS, hits.size()); i++) {
+            String slug = hits.get(i).slug();
+            background(() -> prefetchInstall(project, slug));
+        }
+        if (offset + limit < total) {
+            background(() -> http.get(searchUrl(project, query, limit, offset + limit)));
+        }
+        return new SearchPage(hits, total, offset);
+    }
+
+    /**
+     * Run a lookup in the background, only to fill the response cache
+     */
+    private void background(Callable<?> lookup) {
+        CompletableFuture<?> future = async(lookup);
+        prefetches.add(future);
+        future.whenComplete((result, error) -> prefetches.remove(future));
+    }
+
+    /**
+     * Warm every lookup "install <slug>" will make: the project, its compatible versions,
+     * and the same for each required dependency of the latest version
+     */
+    private Void prefetchInstall(ProjectSettings project, String slug) throws IOException {
+        http.get(projectUrl(slug));
+        JsonArray versions = http.getJsonArray(versionsUrl(project, slug));
+        if (versions.isEmpty()) return null;
+
+        for (String depProjectId : requiredDependencies(versions.get(0).getAsJsonObject())) {
+            String depSlug = projectSlug(depProjectId);
+            http.get(projectUrl(depSlug));
+            http.get(versionsUrl(project, depSlug));
+        }
+        return null;
+    }
+
+    // === Many projects ===
+
+    /**
+     * Resolve a mod and all its required dependencies into the plan, dependencies first.
+     * Projects already in the plan are not visited again.
+     */
+    private void resolveGraph(ProjectSettings project, String mod, Map<String, ModVersion> plan,
+                              Progress progress) throws IOException {
+        ModVersion version = resolveMod(project, mod, progress);
+        if (plan.containsKey(version.projectId())) {
+            return;
+        }
+
+        // Placeholder guards against dependency cycles while the subtree is resolved
+        plan.put(version.projectId(), null);
+        for (String depProjectId : version.dependencies()) {
+            if (plan.containsKey(depProjectId)) continue;
+            try {
+                resolveGraph(project, projectSlug(depProjectId), plan, progress);
+            } catch (ModNotFoundException e) {
+                progress.warning(e.getMessage());
+            } catch (IOException e) {
+                progress.warning("Could not resolve dependency: " + depProjectId);
+            }
+        }
+        plan.remove(version.projectId());
+        plan.put(version.projectId(), version);
+    }
+
+    private Map<ProjectSettings, List<String>> installWorkspace(Collection<ProjectSettings> projects, List<String> mods,
+                                                                Progress progress) throws IOException {
+        Map<String, List<ProjectSettings>> groups = new LinkedHashMap<>();
+        for (ProjectSettings project : projects) {
+            groups.computeIfAbsent(project.loader() + " " + project.minecraftVersion(), k -> new ArrayList<>()).add(project);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(MAX_PARALLEL);
+        try {
+            // 1. Resolve each group's graph once, all groups at the same time
+            progress.status("Resolving " + String.join(", ", mods) + " for " + groups.size() + " group(s)...");
+            Map<String, Future<Collection<ModVersion>>> pending = new LinkedHashMap<>();
+            for (Map.Entry<String, List<ProjectSettings>> group : groups.entrySet()) {
+                ProjectSettings resolver = group.getValue().get(0);
+                pending.put(group.getKey(), pool.submit(() -> {
+                    Map<String, ModVersion> plan = new LinkedHashMap<>();
+                    for (String mod : mods) {
+                        try {
+                            resolveGraph(resolver, mod, plan, progress);
+                        } catch (ModNotFoundException e) {
+                            progress.warning(e.getMessage());
+                        }
+                    }
+                    return plan.values();
+                }));
+            }
+            Map<String, Collection<ModVersion>> plans = new LinkedHashMap<>();
+            for (Map.Entry<String, Future<Collection<ModVersion>>> entry : pending.entrySet()) {
+                plans.put(entry.getKey(), get(entry.getValue()));
+            }
+            // What was asked for, as opposed to what something in the plan requires. These are
+            // installed like install() does, even when another jar provides their mod ID.
+            Map<String, Set<String>> explicits = new HashMap<>();
+            for (Map.Entry<String, Collection<ModVersion>> plan : plans.entrySet()) {
+                Set<String> required = plan.getValue().stream()
+                    .flatMap(file -> file.dependencies().stream())
+                    .collect(Collectors.toSet());
+                explicits.put(plan.getKey(), plan.getValue().stream()
+                    .filter(file -> !required.contains(file.projectId())
+                        || mods.stream().anyMatch(file.slug()::equalsIgnoreCase))
+                    .map(ModVersion::projectId)
+                    .collect(Collectors.toSet()));
+            }
+
+            // 2. Download every distinct file missing somewhere exactly once. Files go one level of
+            //    the graph at a time, parents first, so libraries a parent bundles are known before
+            //    they would be fetched.
+            Map<ProjectSettings, Manifest> manifests = new HashMap<>();
+            for (ProjectSettings project : projects) {
+                try (FolderLock lock = lock(project, false, progress)) {
+                    manifests.put(project, manifest(project));
+                }
+            }
+            // Per group, a parent may sit deeper in another group's graph than its libraries in this one
+            Map<String, Map<String, Integer>> levels = new HashMap<>(); // group -> URL -> depth below the mods asked for
+            for (Map.Entry<String, Collection<ModVersion>> plan : plans.entrySet()) {
+                Map<String, Integer> depths = new HashMap<>(); // project ID -> depth
+                Map<String, Integer> groupLevels = new HashMap<>();
+                List<ModVersion> order = new ArrayList<>(plan.getValue());
+                Collections.reverse(order);
+                for (ModVersion file : order) {
+                    int depth = depths.getOrDefault(file.projectId(), 0);
+                    groupLevels.merge(file.url(), depth, Math::max);
+                    for (String dep : file.dependencies()) {
+                        depths.merge(dep, depth + 1, Math::max);
+                    }
+                }
+                levels.put(plan.getKey(), groupLevels);
+            }
+
+            Map<Path, JarMeta> cachedMeta = new ConcurrentHashMap<>();
+            Set<Path> verified = ConcurrentHashMap.newKeySet(); // cached files checked against their hashes
+            Map<ProjectSettings, Set<String>> bundled = new HashMap<>(); // mod IDs the jars to be placed provide
+            int deepest = levels.values().stream().flatMap(l -> l.values().stream()).max(Integer::compare).orElse(0);
+            for (int level = 0; level <= deepest; level++) {
+                Map<String, ModVersion> needed = new LinkedHashMap<>();
+                Map<String, List<ProjectSettings>> placedIn = new HashMap<>();
+                for (Map.Entry<String, List<ProjectSettings>> group : groups.entrySet()) {
+                    Set<String> explicit = explicits.get(group.getKey());
+                    Map<String, Integer> groupLevels = levels.get(group.getKey());
+                    for (ModVersion file : plans.get(group.getKey())) {
+                        if (groupLevels.get(file.url()) != level) continue;
+                        for (ProjectSettings project : group.getValue()) {
+                            Set<String> ids = bundled.computeIfAbsent(project, k -> new HashSet<>());
+                            if (Files.exists(project.modsFolder().resolve(file.fileName()))) continue;
+                            if (!explicit.contains(file.projectId())
+                                    && (providerOf(manifests.get(project), file.slug()) != null
+                                        || modIds(file.slug()).stream().anyMatch(ids::contains))) {
+                                continue;
+                            }
+                            needed.putIfAbsent(file.url(), file);
+                            placedIn.computeIfAbsent(file.url(), k -> new ArrayList<>()).add(project);
+                        }
+                    }
+                }
+                if (needed.isEmpty()) continue;
+
+                progress.status("Downloading " + needed.size() + " file(s)...");
+                List<Future<?>> downloads = new ArrayList<>();
+                for (ModVersion file : needed.values()) {
+                    downloads.add(pool.submit(() -> cache(file, verified, progress)));
+                }
+                for (Future<?> download : downloads) {
+                    get(download);
+                }
+                for (ModVersion file : needed.values()) {
+                    Path cached = cachedFile(file.url());
+                    Set<String> provides = cachedMeta.computeIfAbsent(cached, JarMeta::read).provides();
+                    for (ProjectSettings project : placedIn.get(file.url())) {
+                        bundled.get(project).addAll(provides);
+                    }
+                }
+            }
+
+            // 3. Populate every mods folder in parallel
+            Map<ProjectSettings, Future<List<String>>> populated = new LinkedHashMap<>();
+            for (Map.Entry<String, List<ProjectSettings>> group : groups.entrySet()) {
+                Collection<ModVersion> plan = plans.get(group.getKey());
+                Set<String> explicit = explicits.get(group.getKey());
+                for (ProjectSettings project : group.getValue()) {
+                    populated.put(project, pool.submit(() -> {
+                        try (FolderLock lock = lock(project, true, progress)) {
+                            Manifest manifest = manifest(project);
+                            Map<String, String> placed = new HashMap<>(); // project ID -> jar satisfying it
+                            List<String> added = new ArrayList<>();
+                            // Parents before their dependencies, so bundled libraries are skipped
+                            List<ModVersion> order = new ArrayList<>(plan);
+                            Collections.reverse(order);
+                            for (ModVersion file : order) {
+                                Path target = project.modsFolder().resolve(file.fileName());
+                                String provider = explicit.contains(file.projectId()) ? null : providerOf(manifest, file.slug());
+                                if (Files.exists(target)) {
+                                    if (explicit.contains(file.projectId())) {
+                                        manifest.markExplicit(file.fileName());
+                                        progress.alreadyInstalled(file);
+                                    }
+                                    placed.put(file.projectId(), file.fileName());
+                                } else if (provider != null) {
+                                    placed.put(file.projectId(), provider);
+                                } else {
+                                    // Normally downloaded in step 2, unless the folder changed meanwhile
+                                    Path cached = cache(file, verified, progress);
+                                    linkOrCopy(cached, target);
+                                    manifest.record(file.fileName(), file.projectId(), file.slug(), explicit.contains(file.projectId()),
+                                        cachedMeta.computeIfAbsent(cached, JarMeta::read));
+                                    placed.put(file.projectId(), file.fileName());
+                                    added.add(file.fileName());
+                                }
+                            }
+                            for (ModVersion file : order) {
+                                for (String dep : file.dependencies()) {
+                                    if (placed.containsKey(file.projectId()) && placed.containsKey(dep)) {
+                                        manifest.link(placed.get(file.projectId()), placed.get(dep));
+                                    }
+                                }
+                            }
+                            manifest.save();
+                            return added;
+                        }
+                    }));
+                }
+            }
+            Map<ProjectSettings, List<String>> results = new LinkedHashMap<>();
+            for (Map.Entry<ProjectSettings, Future<List<String>>> entry : populated.entrySet()) {
+                results.put(entry.getKey(), get(entry.getValue()));
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * The file of a version in the download cache, downloaded unless it is there already.
+     * A cached file is only trusted once it matched the version's hashes, a stale or damaged one
+     * is downloaded again. Downloads are verified as they are written.
+     */
+    private Path cache(ModVersion file, Set<Path> verified, Progress progress) throws IOException {
+        Path cached = cachedFile(file.url());
+        if (verified.contains(cached)) {
+            return cached;
+        }
+        boolean intact = Files.exists(cached) && (file.hashes().isEmpty()
+            ? Files.size(cached) == file.size()
+            : Http.matchesHashes(cached, file.hashes()));
+        if (!intact) {
+            Files.createDirectories(cached.getParent());
+            http.download(file.url(), cached, file.size(), file.hashes(), progress);
+        }
+        verified.add(cached);
+        return cached;
+    }
+
+    /**
+     * Shared download cache, jars are keyed by their CDN path, which is unique per version
+     */
+    private Path cachedFile(String url) throws IOException {
+        Path files = cacheDir.resolve("files");
+        Path cached = files.resolve(URI.create(url).getPath().replaceFirst("^/+", "")).normalize();
+        if (!cached.startsWith(files) || cached.equals(files)) {
+            throw new IOException("Unexpected download URL: " + url);
+        }
+        return cached;
+    }
+
+    private static void linkOrCopy(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (UnsupportedOperationException | IOException e) {
+            // Different drive or no hard link support. Copy next to the target and rename,
+            // so nothing ever sees half a jar.
+            Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".part");
+            try {
+                Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+}
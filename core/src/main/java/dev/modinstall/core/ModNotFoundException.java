@@ -0,0 +1,13 @@
+package dev.modinstall.core;
+
+import java.io.IOException;
+
+/**
+ * There is no such mod, or no version of it for the project's loader and Minecraft version
+ */
+public class ModNotFoundException extends IOException {
+
+    public ModNotFoundException(String message) {
+        super(message);
+    }
+}
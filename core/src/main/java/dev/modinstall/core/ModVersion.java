@@ -0,0 +1,13 @@
+package dev.modinstall.core;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A resolved, downloadable version of a Modrinth project: its primary file, the hashes it is
+ * verified against (by algorithm name, SHA-512 and SHA-1) and the project IDs of its required
+ * dependencies
+ */
+public record ModVersion(String projectId, String slug, String title, String versionId, String versionNumber,
+                         String fileName, String url, long size, Map<String, String> hashes,
+                         List<String> dependencies) {}
@@ -0,0 +1,453 @@
+package dev.modinstall.core;
+
+import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Modrinth modpacks (.mrpack) in and out of a project: importing one into the run folder,
+ * exporting the mods folder as one or as a plain JSON modlist. The caller holds the folder lock.
+ */
+final class Modpacks {
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    /**
+     * A file listed in a modpack's modrinth.index.json. Hashes are keyed by JCA algorithm name.
+     */
+    private record PackFile(String path, Map<String, String> hashes, List<String> downloads, long size) {}
+
+    private final Http http;
+
+    Modpacks(Http http) {
+        this.http = http;
+    }
+
+    // === Import ===
+
+    /**
+     * Import a Modrinth modpack (.mrpack) into the run folder: every listed file is downloaded
+     * in parallel and verified against the index, and overrides/ is extracted straight from the zip.
+     */
+    ImportResult importPack(ProjectSettings settings, Path packFile, Progress progress) throws IOException {
+        if (!Files.isRegularFile(packFile)) {
+            throw new IOException("File not found: " + packFile);
+        }
+
+        Path runFolder = settings.runFolder();
+
+        try (ZipFile zip = new ZipFile(packFile.toFile())) {
+            ZipEntry indexEntry = zip.getEntry("modrinth.index.json");
+            if (indexEntry == null) {
+                throw new IOException("Not a Modrinth modpack (modrinth.index.json missing): " + packFile.getFileName());
+            }
+
+            Map<String, String> packInfo = new HashMap<>();
+            List<PackFile> files;
+            try (InputStream in = zip.getInputStream(indexEntry)) {
+                files = readPackIndex(in, packInfo);
+            }
+
+            String name = packInfo.getOrDefault("name", packFile.getFileName().toString());
+            progress.status("Importing " + name + " (" + files.size() + " files)");
+
+            String packMinecraft = packInfo.get("minecraft");
+            if (packMinecraft != null && !packMinecraft.equals(settings.minecraftVersion())) {
+                progress.warning("Pack targets Minecraft " + packMinecraft + ", project uses " + settings.minecraftVersion());
+            }
+            String packLoader = packInfo.keySet().stream()
+                .map(k -> k.replace("-loader", ""))
+                .filter(ProjectSettings.LOADERS::contains)
+                .findFirst().orElse(null);
+            if (packLoader != null && !packLoader.equals(settings.loader())) {
+                progress.warning("Pack targets " + packLoader + ", project uses " + settings.loader());
+            }
+
+            // 1. Start all downloads
+            AtomicInteger downloaded = new AtomicInteger();
+            AtomicInteger skipped = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(ModInstallClient.MAX_PARALLEL);
+            List<Future<?>> tasks = new ArrayList<>();
+
+            for (PackFile file : files) {
+                Path target = runFolder.resolve(file.path()).normalize();
+                if (!target.startsWith(runFolder)) {
+                    progress.warning("Skipping file outside the run folder: " + file.path());
+                    continue;
+                }
+                tasks.add(pool.submit(() -> {
+                    try {
+                        if (Files.exists(target) && Http.matchesHashes(target, file.hashes())) {
+                            skipped.incrementAndGet();
+                            return;
+                        }
+                        Files.createDirectories(target.getParent());
+                        downloadPackFile(file, target, progress);
+                        downloaded.incrementAndGet();
+                    } catch (IOException e) {
+                        failed.incrementAndGet();
+                        progress.warning(file.path() + ": " + e.getMessage());
+                    }
+                }));
+            }
+
+            // 2. Extract overrides while the downloads run
+            int overrides = 0;
+            try {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    String entryName = entry.getName();
+                    String relative;
+                    if (entryName.startsWith("overrides/")) {
+                        relative = entryName.substring("overrides/".length());
+                    } else if (entryName.startsWith("client-overrides/")) {
+                        relative = entryName.substring("client-overrides/".length());
+                    } else {
+                        continue;
+                    }
+                    if (entry.isDirectory() || relative.isEmpty()) continue;
+
+                    Path target = runFolder.resolve(relative).normalize();
+                    if (!target.startsWith(runFolder)) {
+                        progress.warning("Skipping override outside the run folder: " + entryName);
+                        continue;
+                    }
+                    Files.createDirectories(target.getParent());
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    overrides++;
+                }
+
+                for (Future<?> task : tasks) {
+                    ModInstallClient.get(task);
+                }
+            } finally {
+                pool.shutdown();
+            }
+
+            return new ImportResult(name, downloaded.get(), skipped.get(), overrides, failed.get());
+        }
+    }
+
+    /**
+     * Stream modrinth.index.json without building a tree. Collects the pack name and
+     * its dependencies (minecraft, loader versions) into packInfo.
+     */
+    private static List<PackFile> readPackIndex(InputStream in, Map<String, String> packInfo) throws IOException {
+        List<PackFile> files = new ArrayList<>();
+        JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name" -> packInfo.put("name", reader.nextString());
+                case "dependencies" -> {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        packInfo.put(reader.nextName(), reader.nextString());
+                    }
+                    reader.endObject();
+                }
+                case "files" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        PackFile file = readPackFile(reader);
+                        if (file != null) files.add(file);
+                    }
+                    reader.endArray();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return files;
+    }
+
+    private static PackFile readPackFile(JsonReader reader) throws IOException {
+        String path = null;
+        long size = 0;
+        boolean client = true;
+        Map<String, String> hashes = new LinkedHashMap<>();
+        List<String> downloads = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "path" -> path = reader.nextString();
+                case "fileSize" -> size = reader.nextLong();
+                case "hashes" -> {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String algorithm = reader.nextName();
+                        String value = reader.nextString();
+                        if (algorithm.equals("sha512")) hashes.put("SHA-512", value);
+                        else if (algorithm.equals("sha1")) hashes.put("SHA-1", value);
+                    }
+                    reader.endObject();
+                }
+                case "downloads" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        downloads.add(reader.nextString());
+                    }
+                    reader.endArray();
+                }
+                case "env" -> {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String side = reader.nextName();
+                        String support = reader.nextString();
+                        if (side.equals("client") && support.equals("unsupported")) client = false;
+                    }
+                    reader.endObject();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        // Server-only files don't belong in a dev client run folder
+        return client && path != null ? new PackFile(path, hashes, downloads, size) : null;
+    }
+
+    /**
+     * Try each download URL of a pack file in order until one passes verification
+     */
+    private void downloadPackFile(PackFile file, Path target, Progress progress) throws IOException {
+        if (file.downloads().isEmpty()) {
+            throw new IOException("No download URL");
+        }
+        IOException last = null;
+        for (String url : file.downloads()) {
+            try {
+                http.download(url, target, file.size(), file.hashes(), progress);
+                return;
+            } catch (IOException e) {
+                last = e;
+            }
+        }
+        throw last;
+    }
+
+    // === Export ===
+
+    /**
+     * Export the mods folder as a Modrinth modpack (.mrpack) or a plain JSON modlist.
+     * Jars are hashed in parallel and resolved to Modrinth versions with one bulk request;
+     * jars Modrinth doesn't know are bundled as overrides.
+     */
+    ExportResult export(ProjectSettings settings, Path output, Progress progress) throws IOException {
+        String name = output.getFileName().toString().toLowerCase();
+        boolean modpack = name.endsWith(".mrpack") || name.endsWith(".zip");
+        if (!modpack && !name.endsWith(".json")) {
+            throw new IOException("Unsupported export format, use .mrpack or .json: " + output.getFileName());
+        }
+
+        List<Path> jars = List.of();
+        if (Files.isDirectory(settings.modsFolder())) {
+            try (Stream<Path> files = Files.list(settings.modsFolder())) {
+                jars = files.filter(p -> p.toString().endsWith(".jar")).sorted().toList();
+            }
+        }
+        if (jars.isEmpty()) {
+            return new ExportResult(0, 0);
+        }
+
+        // 1. Hash every jar in parallel
+        progress.status("Hashing " + jars.size() + " mods...");
+        Map<Path, Map<String, String>> hashes = new LinkedHashMap<>();
+        ExecutorService pool = Executors.newFixedThreadPool(
+            Math.min(ModInstallClient.MAX_PARALLEL, Runtime.getRuntime().availableProcessors()));
+        try {
+            Map<Path, Future<Map<String, String>>> pending = new LinkedHashMap<>();
+            for (Path jar : jars) {
+                pending.put(jar, pool.submit(() -> Http.hashFileMapped(jar, List.of("SHA-1", "SHA-512"))));
+            }
+            for (Map.Entry<Path, Future<Map<String, String>>> entry : pending.entrySet()) {
+                hashes.put(entry.getKey(), ModInstallClient.get(entry.getValue()));
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        // 2. Resolve all hashes to Modrinth versions at once
+        progress.status("Resolving versions on Modrinth...");
+        JsonObject request = new JsonObject();
+        JsonArray hashList = new JsonArray();
+        hashes.values().forEach(h -> hashList.add(h.get("SHA-512")));
+        request.add("hashes", hashList);
+        request.addProperty("algorithm", "sha512");
+        JsonObject versionsByHash = JsonParser.parseString(http.post(http.api() + "/version_files", request.toString())).getAsJsonObject();
+
+        List<Path> unknown = new ArrayList<>();
+        for (Path jar : jars) {
+            if (!versionsByHash.has(hashes.get(jar).get("SHA-512"))) {
+                unknown.add(jar);
+            }
+        }
+
+        // 3. Write the requested format
+        Path parent = output.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, output.getFileName().toString(), ".part");
+        try {
+            if (modpack) {
+                writeModpack(settings, temp, jars, hashes, versionsByHash, unknown, progress);
+            } else {
+                writeModlist(settings, temp, jars, hashes, versionsByHash, unknown);
+            }
+            Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return new ExportResult(jars.size(), unknown.size());
+    }
+
+    private void writeModpack(ProjectSettings settings, Path target, List<Path> jars, Map<Path, Map<String, String>> hashes,
+                              JsonObject versionsByHash, List<Path> unknown, Progress progress) throws IOException {
+        JsonObject index = new JsonObject();
+        index.addProperty("formatVersion", 1);
+        index.addProperty("game", "minecraft");
+        index.addProperty("versionId", "1.0.0");
+        index.addProperty("name", packName(settings));
+
+        JsonArray files = new JsonArray();
+        for (Path jar : jars) {
+            if (unknown.contains(jar)) continue;
+            Map<String, String> jarHashes = hashes.get(jar);
+            JsonObject versionFile = findVersionFile(versionsByHash.getAsJsonObject(jarHashes.get("SHA-512")), jarHashes.get("SHA-512"));
+
+            JsonObject file = new JsonObject();
+            file.addProperty("path", "mods/" + jar.getFileName());
+            JsonObject fileHashes = new JsonObject();
+            fileHashes.addProperty("sha1", jarHashes.get("SHA-1"));
+            fileHashes.addProperty("sha512", jarHashes.get("SHA-512"));
+            file.add("hashes", fileHashes);
+            JsonArray downloads = new JsonArray();
+            downloads.add(versionFile.get("url").getAsString());
+            file.add("downloads", downloads);
+            file.addProperty("fileSize", Files.size(jar));
+            files.add(file);
+        }
+        index.add("files", files);
+
+        JsonObject dependencies = new JsonObject();
+        dependencies.addProperty("minecraft", settings.minecraftVersion());
+        if (settings.loaderVersion() != null) {
+            String loaderKey = switch (settings.loader()) {
+                case "fabric" -> "fabric-loader";
+                case "quilt" -> "quilt-loader";
+                default -> settings.loader();
+            };
+            dependencies.addProperty(loaderKey, settings.loaderVersion());
+        } else {
+            progress.warning("Loader version unknown, the pack will only pin Minecraft");
+        }
+        index.add("dependencies", dependencies);
+
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(target))) {
+            zip.putNextEntry(new ZipEntry("modrinth.index.json"));
+            zip.write(GSON.toJson(index).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+
+            for (Path jar : unknown) {
+                zip.putNextEntry(new ZipEntry("overrides/mods/" + jar.getFileName()));
+                Files.copy(jar, zip);
+                zip.closeEntry();
+            }
+        }
+    }
+
+    private void writeModlist(ProjectSettings settings, Path target, List<Path> jars, Map<Path, Map<String, String>> hashes,
+                              JsonObject versionsByHash, List<Path> unknown) throws IOException {
+        // One more bulk request for readable slugs
+        Set<String> projectIds = new LinkedHashSet<>();
+        for (Map.Entry<String, JsonElement> entry : versionsByHash.entrySet()) {
+            projectIds.add(entry.getValue().getAsJsonObject().get("project_id").getAsString());
+        }
+        Map<String, String> slugs = new HashMap<>();
+        if (!projectIds.isEmpty()) {
+            JsonArray ids = new JsonArray();
+            projectIds.forEach(ids::add);
+            for (JsonElement project : http.getJsonArray(http.api() + "/projects?ids=" + URLEncoder.encode(ids.toString(), "UTF-8"))) {
+                JsonObject p = project.getAsJsonObject();
+                slugs.put(p.get("id").getAsString(), p.get("slug").getAsString());
+            }
+        }
+
+        JsonObject modlist = new JsonObject();
+        modlist.addProperty("minecraft", settings.minecraftVersion());
+        modlist.addProperty("loader", settings.loader());
+        if (settings.loaderVersion() != null) {
+            modlist.addProperty("loaderVersion", settings.loaderVersion());
+        }
+
+        JsonArray mods = new JsonArray();
+        for (Path jar : jars) {
+            JsonObject mod = new JsonObject();
+            String sha512 = hashes.get(jar).get("SHA-512");
+            mod.addProperty("file", jar.getFileName().toString());
+            if (!unknown.contains(jar)) {
+                JsonObject version = versionsByHash.getAsJsonObject(sha512);
+                String projectId = version.get("project_id").getAsString();
+                mod.addProperty("slug", slugs.getOrDefault(projectId, projectId));
+                mod.addProperty("project", projectId);
+                mod.addProperty("version", version.get("id").getAsString());
+                mod.addProperty("versionNumber", version.get("version_number").getAsString());
+                mod.addProperty("url", findVersionFile(version, sha512).get("url").getAsString());
+            } else {
+                mod.addProperty("unknown", true);
+            }
+            mod.addProperty("sha512", sha512);
+            mods.add(mod);
+        }
+        modlist.add("mods", mods);
+
+        Files.writeString(target, GSON.toJson(modlist));
+    }
+
+    /**
+     * The project's folder name, two levels above run/mods
+     */
+    private static String packName(ProjectSettings settings) {
+        Path project = settings.runFolder().getParent();
+        return project != null && project.getFileName() != null ? project.getFileName().toString() : "modpack";
+    }
+
+    /**
+     * The file of a version whose sha512 matches, falling back to the primary file
+     */
+    private static JsonObject findVersionFile(JsonObject version, String sha512) {
+        JsonArray files = version.getAsJsonArray("files");
+        for (JsonElement fileEl : files) {
+            JsonObject file = fileEl.getAsJsonObject();
+            JsonObject fileHashes = file.getAsJsonObject("hashes");
+            if (fileHashes != null && fileHashes.has("sha512") && sha512.equalsIgnoreCase(fileHashes.get("sha512").getAsString())) {
+                return file;
+            }
+        }
+        for (JsonElement fileEl : files) {
+            if (fileEl.getAsJsonObject().get("primary").getAsBoolean()) return fileEl.getAsJsonObject();
+        }
+        return files.get(0).getAsJsonObject();
+    }
+}
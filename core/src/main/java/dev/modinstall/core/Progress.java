@@ -0,0 +1,64 @@
+package dev.modinstall.core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Callbacks for what a running operation is doing. Every method does nothing by default, so
+ * implement only what you show. They are called from worker threads, during parallel downloads
+ * from several at once.
+ */
+public interface Progress {
+
+    Progress NONE = new Progress() {};
+
+    /**
+     * A step of a longer operation, e.g. "Hashing 40 mods"
+     */
+    default void status(String message) {}
+
+    /**
+     * Another process or operation is changing the mods folder, this one waits for it
+     */
+    default void waiting(Path modsFolder) {}
+
+    /**
+     * About to look up a mod, as given or as a dependency's slug
+     */
+    default void resolving(String mod) {}
+
+    default void resolved(ModVersion version) {}
+
+    default void alreadyInstalled(ModVersion version) {}
+
+    /**
+     * A required dependency of parent is satisfied by an installed jar, possibly nested in it
+     */
+    default void dependencyProvided(ModVersion parent, String slug, String fileName) {}
+
+    /**
+     * The first missing dependency of parent is about to be installed
+     */
+    default void installingDependencies(ModVersion parent) {}
+
+    /**
+     * A download connected. fileName is the target's name, size may be 0 if unknown.
+     */
+    default void downloadStarted(String fileName, long size) {}
+
+    /**
+     * Bytes received since the last call for the same download
+     */
+    default void downloadProgress(String fileName, long bytes) {}
+
+    default void downloadFinished(String fileName, long size) {}
+
+    /**
+     * A download attempt failed. Another mirror may still be tried.
+     */
+    default void downloadFailed(String fileName, IOException error) {}
+
+    default void installed(ModVersion version) {}
+
+    default void warning(String message) {}
+}
@@ -0,0 +1,37 @@
+package dev.modinstall.core;
+
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The Minecraft project mods are installed for. Nothing is detected: the caller says which
+ * Minecraft version and loader to resolve for and where the mods folder is. The loader version
+ * is optional and only ends up in exported modpacks.
+ */
+public record ProjectSettings(String minecraftVersion, String loader, String loaderVersion, Path modsFolder) {
+
+    /**
+     * Loaders as Modrinth names them
+     */
+    public static final Set<String> LOADERS = Set.of("fabric", "forge", "neoforge", "quilt");
+
+    public ProjectSettings {
+        Objects.requireNonNull(minecraftVersion, "minecraftVersion");
+        Objects.requireNonNull(loader, "loader");
+        loader = loader.toLowerCase(Locale.ROOT);
+        modsFolder = modsFolder.toAbsolutePath().normalize();
+    }
+
+    public ProjectSettings(String minecraftVersion, String loader, Path modsFolder) {
+        this(minecraftVersion, loader, null, modsFolder);
+    }
+
+    /**
+     * The folder holding the mods folder, usually run/. Modpacks are imported into it.
+     */
+    public Path runFolder() {
+        return modsFolder.getParent();
+    }
+}
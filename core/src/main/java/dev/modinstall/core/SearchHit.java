@@ -0,0 +1,6 @@
+package dev.modinstall.core;
+
+/**
+ * A mod found by a search
+ */
+public record SearchHit(String projectId, String slug, String title, String description, long downloads) {}
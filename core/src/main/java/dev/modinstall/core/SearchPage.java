@@ -0,0 +1,8 @@
+package dev.modinstall.core;
+
+import java.util.List;
+
+/**
+ * One page of search results. offset is the position of the first hit among all totalHits.
+ */
+public record SearchPage(List<SearchHit> hits, int totalHits, int offset) {}
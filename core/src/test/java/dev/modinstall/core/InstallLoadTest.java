@@ -0,0 +1,137 @@
+package dev.modinstall.core;
+
+import static dev.modinstall.core.ModInstallClientTest.elapsedMs;
+import static dev.modinstall.core.ModInstallClientTest.jars;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Throughput against the Modrinth stand-in with latency and a bandwidth cap. Timings are printed
+ * for comparison between runs; the assertions are on the requests made, which don't depend on the
+ * machine.
+ */
+class InstallLoadTest {
+
+    @TempDir
+    Path dir;
+
+    private ModrinthStandIn modrinth;
+
+    @BeforeEach
+    void start() throws IOException {
+        modrinth = new ModrinthStandIn();
+    }
+
+    @AfterEach
+    void stop() {
+        modrinth.close();
+    }
+
+    @Test
+    void installsALargeGraphFetchingEverythingOnce() throws IOException {
+        List<String> all = layers(4, 8);
+        modrinth.latency(5);
+        ProjectSettings project = project("a", "fabric");
+
+        long start = System.nanoTime();
+        try (ModInstallClient client = client()) {
+            client.install(project, "l0-0", Progress.NONE).join();
+        }
+        long elapsed = elapsedMs(start);
+
+        assertEquals(new TreeSet<>(all).stream().map(n -> n + "-1.0.0.jar").toList(), jars(project));
+        assertEquals(all.size(), modrinth.count("GET /data/"), "every file downloaded once");
+        for (String name : all) {
+            assertEquals(1, modrinth.count("GET /v2/project/" + name + "/version"), name + " resolved once");
+        }
+        System.out.printf("Installed %d mods in %d ms, %d requests%n", all.size(), elapsed, modrinth.requests().size());
+    }
+
+    @Test
+    void fillsAWorkspaceDownloadingInParallel() throws IOException {
+        List<String> all = layers(2, 4);
+        for (String name : all) {
+            modrinth.project(name).padding(64 * 1024);
+        }
+        modrinth.bandwidth(512 * 1024);
+        List<ProjectSettings> projects = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            projects.add(project("p" + i, i % 2 == 0 ? "fabric" : "quilt"));
+        }
+        List<String> expected = new TreeSet<>(all).stream().map(n -> n + "-1.0.0.jar").toList();
+
+        long start = System.nanoTime();
+        try (ModInstallClient client = client()) {
+            client.installAll(projects, List.of("l0-0"), Progress.NONE).join();
+        }
+        long elapsed = elapsedMs(start);
+
+        for (ProjectSettings project : projects) {
+            assertEquals(expected, jars(project), project.modsFolder().toString());
+        }
+        assertEquals(all.size(), modrinth.count("GET /data/"), "every file downloaded once for all projects");
+        assertTrue(modrinth.peakDownloads() > 1, "downloads overlap");
+        long bytes = all.stream().mapToLong(n -> modrinth.project(n).jar().length).sum();
+        System.out.printf("Filled %d projects with %d mods in %d ms, %d KB/s from the CDN, %d downloads at once%n",
+            projects.size(), all.size(), elapsed, bytes * 1000 / 1024 / Math.max(1, elapsed), modrinth.peakDownloads());
+
+        // A second run on the same cache needs neither the API nor the CDN
+        List<ProjectSettings> again = projects.stream()
+            .map(p -> project(p.modsFolder().getParent().getParent().getFileName() + "-again", p.loader()))
+            .toList();
+        int before = modrinth.requests().size();
+        start = System.nanoTime();
+        try (ModInstallClient client = client()) {
+            client.installAll(again, List.of("l0-0"), Progress.NONE).join();
+        }
+        elapsed = elapsedMs(start);
+
+        for (ProjectSettings project : again) {
+            assertEquals(expected, jars(project), project.modsFolder().toString());
+        }
+        List<String> requests = modrinth.requests().subList(before, modrinth.requests().size());
+        assertEquals(List.of(), requests.stream().filter(r -> r.startsWith("GET ")).toList());
+        System.out.printf("Filled them again from the cache in %d ms%n", elapsed);
+    }
+
+    // === Helpers ===
+
+    /**
+     * A root l0-0 requiring every node of the first of depth layers of width nodes, each node
+     * l{i}-{j} requiring l{i+1}-{j} and l{i+1}-{j+1}, wrapping around, so most are shared. All names.
+     */
+    private List<String> layers(int depth, int width) {
+        List<String> names = new ArrayList<>(List.of("l0-0"));
+        for (int j = 0; j < width; j++) {
+            modrinth.project("l0-0").requires("l1-" + j);
+        }
+        for (int i = 1; i <= depth; i++) {
+            for (int j = 0; j < width; j++) {
+                String name = "l" + i + "-" + j;
+                names.add(name);
+                ModrinthStandIn.Project project = modrinth.project(name);
+                if (i < depth) {
+                    project.requires("l" + (i + 1) + "-" + j, "l" + (i + 1) + "-" + (j + 1) % width);
+                }
+            }
+        }
+        return names;
+    }
+
+    private ModInstallClient client() {
+        return new ModInstallClient(List.of(modrinth.api()), List.of(modrinth.cdn()), dir.resolve("cache"));
+    }
+
+    private ProjectSettings project(String name, String loader) {
+        return new ProjectSettings("1.20.1", loader, dir.resolve(name).resolve("run").resolve("mods"));
+    }
+}
@@ -0,0 +1,333 @@
+package dev.modinstall.core;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * End to end: a client against the Modrinth stand-in, installing into real folders
+ */
+class ModInstallClientTest {
+
+    @TempDir
+    Path dir;
+
+    private ModrinthStandIn modrinth;
+    private final List<String> warnings = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void start() throws IOException {
+        modrinth = new ModrinthStandIn();
+    }
+
+    @AfterEach
+    void stop() {
+        modrinth.close();
+    }
+
+    // === Installing ===
+
+    @Test
+    void installsEveryLevelOfADependencyGraph() throws IOException {
+        modrinth.project("app").requires("ui", "net");
+        modrinth.project("ui").requires("core");
+        modrinth.project("net").requires("core", "codec");
+        modrinth.project("codec").requires("core");
+        modrinth.project("core");
+        ProjectSettings project = project("a");
+
+        try (ModInstallClient client = client(List.of(modrinth), List.of(modrinth))) {
+            List<ModVersion> installed = client.install(project, "app", Progress.NONE).join();
+
+            assertEquals("app", installed.get(0).slug());
+            assertEquals(List.of("app-1.0.0.jar", "codec-1.0.0.jar", "core-1.0.0.jar", "net-1.0.0.jar", "ui-1.0.0.jar"),
+                jars(project));
+            assertEquals(5, modrinth.count("GET /data/"), "every file downloaded once");
+            assertEquals(List.of("app-1.0.0.jar"), client.list(project, Progress.NONE).join().stream()
+                .filter(InstalledMod::explicit).map(InstalledMod::fileName).toList());
+
+            // The whole graph hangs off app
+            assertEquals(5, client.remove(project, "app-1.0.0.jar", Progress.NONE).join().size());
+            assertEquals(List.of(), jars(project));
+        }
+    }
+
+    @Test
+    void skipsDependenciesTheParentBundles() throws IOException {
+        modrinth.project("app").requires("lib").bundles("lib");
+        modrinth.project("lib");
+        ProjectSettings project = project("a");
+
+        try (ModInstallClient client = client(List.of(modrinth), List.of(modrinth))) {
+            client.install(project, "app", Progress.NONE).join();
+        }
+
+        assertEquals(List.of("app-1.0.0.jar"), jars(project));
+        assertEquals(1, modrinth.count("GET /data/"));
+    }
+
+    @Test
+    void skipsBundledDependenciesInAWorkspaceWhereTheParentSitsDeeperElsewhere() throws IOException {
+        modrinth.project("app").requiresOn("fabric", "lib").bundles("lib");
+        modrinth.project("lib");
+        // On Quilt app is two levels down, below x and y
+        modrinth.project("x").requiresOn("quilt", "y");
+        modrinth.project("y").requiresOn("quilt", "app");
+        ProjectSettings fabric = project("a");
+        ProjectSettings quilt = new ProjectSettings("1.20.1", "quilt", dir.resolve("b").resolve("run").resolve("mods"));
+
+        try (ModInstallClient client = client(List.of(modrinth), List.of(modrinth))) {
+            client.installAll(List.of(fabric, quilt), List.of("app", "x"), Progress.NONE).join();
+        }
+
+        assertEquals(List.of("app-1.0.0.jar", "x-1.0.0.jar"), jars(fabric));
+        assertEquals(List.of("app-1.0.0.jar", "x-1.0.0.jar", "y-1.0.0.jar"), jars(quilt));
+        assertEquals(0, modrinth.count("GET /data/" + modrinth.project("lib").id + "/"), "lib comes inside app");
+    }
+
+    @Test
+    void walksMutualDependenciesOnce() throws IOException {
+        // Mod IDs that don't match the slugs, so the installed jars aren't recognized as providers
+        modrinth.project("alpha").modId("alpha_core").requires("beta");
+        modrinth.project("beta").modId("beta_core").requires("alpha");
+        ProjectSettings project = project("a");
+
+        try (ModInstallClient client = client(List.of(modrinth), List.of(modrinth))) {
+            client.install(project, "alpha", Progress.NONE).join();
+            // Installed already, its dependencies are walked again
+            client.install(project, "alpha", Progress.NONE).join();
+        }
+
+        assertEquals(List.of("alpha-1.0.0.jar", "beta-1.0.0.jar"), jars(project));
+        assertEquals(2, modrinth.count("GET /data/"));
+    }
+
+    @Test
+    void installsWhatAWorkspaceAsksForLikeASingleInstall() throws IOException {
+        modrinth.project("app").requires("lib");
+        modrinth.project("lib");
+        ProjectSettings project = project("a");
+        // An older app, and a lib under another name that stays the provider
+        Files.createDirectories(project.modsFolder());
+        Files.write(project.modsFolder().resolve("app-0.9.jar"), modrinth.project("app").jar());
+        Files.write(project.modsFolder().resolve("lib-0.9.jar"), modrinth.project("lib").jar());
+
+        try (ModInstallClient client = client(List.of(modrinth), List.of(modrinth))) {
+            assertEquals(List.of("app-1.0.0.jar"), client.installAll(List.of(project), List.of("app"), Progress.NONE)
+                .join().get(project));
+            assertTrue(client.list(project, Progress.NONE).join().stream()
+                .anyMatch(mod -> mod.fileName().equals("app-1.0.0.jar") && mod.explicit()));
+        }
+        assertEquals(List.of("app-0.9.jar", "app-1.0.0.jar", "lib-0.9.jar"), jars(project));
+    }
+
+    @Test
+    void reportsModsThatDontExist() throws IOException {
+        ProjectSettings project = project("a");
+
+        try (ModInstallClient client = client(List.of(modrinth), List.of(modrinth))) {
+            CompletionException failure = assertThrows(CompletionException.class,
+                () -> client.install(project, "nothing-like-this", Progress.NONE).join());
+            assertInstanceOf(ModNotFoundException.class, failure.getCause());
+        }
+    }
+
+    @Test
+    void cleanRemovesLibrariesOfAModDeletedByHand() throws IOException {
+        modrinth.project("app").requires("lib");
+        modrinth.project("lib");
+        ProjectSettings project = project("a");
+        // Put there before ModInstall ever looked at the folder
+        Files.createDirectories(project.modsFolder());
+        Files.write(project.modsFolder().resolve("app.jar"), modrinth.project("app").jar());
+        Files.write(project.modsFolder().resolve("lib.jar"), modrinth.project("lib").jar());
+
+        try (ModInstallClient client = client(List.of(modrinth), List.of(modrinth))) {
+            assertEquals(List.of("app.jar"), client.list(project, Progress.NONE).join().stream()
+                .filter(InstalledMod::explicit).map(InstalledMod::fileName).toList());
+
+            Files.delete(project.modsFolder().resolve("app.jar"));
+            assertEquals(List.of("lib.jar"), client.clean(project, true, Progress.NONE).join());
+        }
+    }
+
+    @Test
+    void installsADependencyAJarNoLongerProvides() throws IOException {
+        modrinth.project("app").requires("lib");
+        modrinth.project("lib");
+        modrinth.project("other");
+        ProjectSettings project = project("a");
+        Files.createDirectories(project.modsFolder());
+        Path bundle = project.modsFolder().resolve("bundle.jar");
+        Files.write(bundle, modrinth.project("lib").jar());
+
+        try (ModInstallClient client = client(List.of(modrinth), List.of(modrinth))) {
+            client.list(project, Progress.NONE).join();
+            // Swapped for a jar that provides something else
+            Files.write(bundle, modrinth.project("other").jar());
+            client.install(project, "app", Progress.NONE).join();
+        }
+
+        assertEquals(List.of("app-1.0.0.jar", "bundle.jar", "lib-1.0.0.jar"), jars(project));
+    }
+
+    // === Integrity ===
+
+    @Test
+    void takesFilesFromTheNextMirrorWhenOneDoesntMatchItsHashes() throws IOException {
+        modrinth.project("lib");
+        modrinth.latency(50);
+        try (ModrinthStandIn proxy = new ModrinthStandIn()) {
+            proxy.project("lib").tampered();
+            ProjectSettings project = project("a");
+
+            // The proxy answers faster, so it is tried first
+            try (ModInstallClient client = client(List.of(modrinth), List.of(proxy, modrinth))) {
+                client.install(project, "lib", Progress.NONE).join();
+            }
+
+            assertEquals(1, proxy.count("GET /data/"));
+            assertArrayEquals(modrinth.project("lib").jar(),
+                Files.readAllBytes(project.modsFolder().resolve("lib-1.0.0.jar")));
+        }
+    }
+
+    @Test
+    void refusesFilesNoSourceServesIntact() throws IOException {
+        modrinth.project("lib").tampered();
+        ProjectSettings project = project("a");
+
+        try (ModInstallClient client = client(List.of(modrinth), List.of(modrinth))) {
+            CompletionException failure = assertThrows(CompletionException.class,
+                () -> client.install(project, "lib", Progress.NONE).join());
+            assertInstanceOf(IOException.class, failure.getCause());
+        }
+        // Downloaded from the mirror, rejected, nothing left behind
+        assertEquals(1, modrinth.count("GET /data/"));
+        assertEquals(List.of(), jars(project));
+    }
+
+    // === Failures ===
+
+    @Test
+    void waitsOutARateLimit() throws IOException {
+        modrinth.project("lib");
+        modrinth.rateLimit("/v2/project", 1, 1);
+        ProjectSettings project = project("a");
+
+        long start = System.nanoTime();
+        try (ModInstallClient client = client(List.of(modrinth), List.of(modrinth))) {
+            client.install(project, "lib", Progress.NONE).join();
+        }
+
+        assertTrue(elapsedMs(start) >= 1000, "waited for Retry-After");
+        assertTrue(warnings.stream().anyMatch(w -> w.startsWith("Rate limited")), warnings.toString());
+        assertEquals(List.of("lib-1.0.0.jar"), jars(project));
+    }
+
+    @Test
+    void retriesAServerError() throws IOException {
+        modrinth.project("lib");
+        modrinth.fail("/v2/project", 503, 1);
+        ProjectSettings project = project("a");
+
+        try (ModInstallClient client = client(List.of(modrinth), List.of(modrinth))) {
+            client.install(project, "lib", Progress.NONE).join();
+        }
+
+        assertTrue(warnings.stream().anyMatch(w -> w.contains("HTTP 503")), warnings.toString());
+        assertEquals(List.of("lib-1.0.0.jar"), jars(project));
+    }
+
+    @Test
+    void failsOverToAHealthyApiMirrorWithoutBackingOff() throws IOException {
+        modrinth.project("app").requires("lib");
+        modrinth.project("lib");
+        try (ModrinthStandIn down = new ModrinthStandIn()) {
+            down.fail("/", 503, ModrinthStandIn.ALWAYS);
+            ProjectSettings project = project("a");
+
+            try (ModInstallClient client = client(List.of(down, modrinth), List.of(modrinth))) {
+                client.install(project, "app", Progress.NONE).join();
+            }
+
+            assertTrue(warnings.stream().noneMatch(w -> w.contains("Retrying")), warnings.toString());
+            assertEquals(List.of("app-1.0.0.jar", "lib-1.0.0.jar"), jars(project));
+            assertEquals(0, down.count("GET /v2/project"), "the failed probe took the mirror out of rotation");
+        }
+    }
+
+    @Test
+    void failsOverWhenAnApiMirrorRefusesTheRequest() throws IOException {
+        modrinth.project("app").requires("lib");
+        modrinth.project("lib");
+        modrinth.latency(50);
+        try (ModrinthStandIn proxy = new ModrinthStandIn()) {
+            // Up, and the fastest, but its credentials expired
+            proxy.fail("/v2/", 403, ModrinthStandIn.ALWAYS);
+            ProjectSettings project = project("a");
+
+            try (ModInstallClient client = client(List.of(proxy, modrinth), List.of(modrinth))) {
+                client.install(project, "app", Progress.NONE).join();
+            }
+
+            assertTrue(proxy.count("GET /v2/") > 0, "the proxy was asked first");
+            assertEquals(List.of("app-1.0.0.jar", "lib-1.0.0.jar"), jars(project));
+            assertTrue(warnings.stream().noneMatch(w -> w.contains("Retrying")), warnings.toString());
+        }
+    }
+
+    @Test
+    void failsOverToAHealthyCdnMirror() throws IOException {
+        modrinth.project("lib");
+        modrinth.latency(50);
+        try (ModrinthStandIn broken = new ModrinthStandIn()) {
+            broken.fail("/data", 500, ModrinthStandIn.ALWAYS);
+            ProjectSettings project = project("a");
+
+            try (ModInstallClient client = client(List.of(modrinth), List.of(broken, modrinth))) {
+                client.install(project, "lib", Progress.NONE).join();
+            }
+
+            assertEquals(1, broken.count("GET /data/"));
+            assertEquals(List.of("lib-1.0.0.jar"), jars(project));
+        }
+    }
+
+    // === Helpers ===
+
+    private ModInstallClient client(List<ModrinthStandIn> apis, List<ModrinthStandIn> cdns) {
+        ModInstallClient client = new ModInstallClient(apis.stream().map(ModrinthStandIn::api).toList(),
+            cdns.stream().map(ModrinthStandIn::cdn).toList(), dir.resolve("cache"));
+        client.onWarning(warnings::add);
+        return client;
+    }
+
+    private ProjectSettings project(String name) {
+        return new ProjectSettings("1.20.1", "fabric", dir.resolve(name).resolve("run").resolve("mods"));
+    }
+
+    static List<String> jars(ProjectSettings project) throws IOException {
+        if (!Files.isDirectory(project.modsFolder())) return List.of();
+        try (Stream<Path> files = Files.list(project.modsFolder())) {
+            String[] names = files.map(p -> p.getFileName().toString()).filter(n -> n.endsWith(".jar")).toArray(String[]::new);
+            Arrays.sort(names);
+            return List.of(names);
+        }
+    }
+
+    static long elapsedMs(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
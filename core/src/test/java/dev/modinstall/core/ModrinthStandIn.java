@@ -0,0 +1,541 @@
+package dev.modinstall.core;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * An in-process stand-in for the Modrinth API and CDN, so network behavior can be tested offline
+ * and repeatably. Tests set up a catalog of projects; their responses are rendered into the
+ * fixtures under /modrinth, which have the shape of api.modrinth.com v2 responses, and their jars
+ * are built to match, with fabric.mod.json, bundled jars and optional padding.
+ *
+ * Latency, a bandwidth cap for files, 5xx and 429 responses can be injected. Every request is
+ * recorded as "METHOD path". Version files point at cdn.modrinth.com like the real ones, so
+ * clients reach them through their CDN mirror setting, see cdn().
+ */
+final class ModrinthStandIn implements AutoCloseable {
+
+    static final int ALWAYS = -1;
+
+    private static final long JAR_TIME = 1_700_000_000_000L;
+
+    private static final JsonObject PROJECT = fixture("project.json");
+    private static final JsonObject VERSION = fixture("version.json");
+    private static final JsonObject SEARCH = fixture("search.json");
+    private static final JsonObject SEARCH_HIT = fixture("search-hit.json");
+
+    /**
+     * A project with a single version. Dependencies and bundled jars are given by slug.
+     */
+    final class Project {
+        final String id;
+        final String slug;
+        final String versionId;
+        private String modId;
+        private final List<String> requires = new ArrayList<>();
+        private final Map<String, List<String>> requiresOn = new HashMap<>(); // loader -> slugs
+        private final List<String> bundles = new ArrayList<>();
+        private int padding;
+        private boolean tampered;
+        private byte[] jar;
+
+        private Project(String id, String slug) {
+            this.id = id;
+            this.slug = slug;
+            this.versionId = "V" + id.substring(1);
+            this.modId = slug.replace('-', '_');
+        }
+
+        Project requires(String... slugs) {
+            requires.addAll(List.of(slugs));
+            return this;
+        }
+
+        /**
+         * Dependencies the version lists only when asked for with this loader. They aren't in
+         * the jar, which is the same for every loader.
+         */
+        Project requiresOn(String loader, String... slugs) {
+            requiresOn.computeIfAbsent(loader, k -> new ArrayList<>()).addAll(List.of(slugs));
+            return this;
+        }
+
+        /**
+         * Ship these projects' jars inside this one, as jar-in-jar
+         */
+        Project bundles(String... slugs) {
+            bundles.addAll(List.of(slugs));
+            return this;
+        }
+
+        /**
+         * The mod ID in the jar, by default the slug with '_' for '-'
+         */
+        Project modId(String modId) {
+            this.modId = modId;
+            return this;
+        }
+
+        /**
+         * Make the jar at least this much bigger, with incompressible bytes
+         */
+        Project padding(int bytes) {
+            this.padding = bytes;
+            return this;
+        }
+
+        /**
+         * Serve a file that doesn't match the hashes the version lists
+         */
+        Project tampered() {
+            this.tampered = true;
+            return this;
+        }
+
+        String fileName() {
+            return slug + "-1.0.0.jar";
+        }
+
+        String title() {
+            return Character.toUpperCase(slug.charAt(0)) + slug.substring(1);
+        }
+
+        synchronized byte[] jar() {
+            if (jar == null) {
+                jar = buildJar();
+            }
+            return jar;
+        }
+
+        private byte[] buildJar() {
+            JsonObject meta = new JsonObject();
+            meta.addProperty("schemaVersion", 1);
+            meta.addProperty("id", modId);
+            meta.addProperty("version", "1.0.0");
+            JsonObject depends = new JsonObject();
+            depends.addProperty("fabricloader", "*");
+            depends.addProperty("minecraft", "1.20.1");
+            for (String dep : requires) {
+                depends.addProperty(project(dep).modId, "*");
+            }
+            meta.add("depends", depends);
+            JsonArray jars = new JsonArray();
+            for (String bundled : bundles) {
+                JsonObject entry = new JsonObject();
+                entry.addProperty("file", "META-INF/jars/" + project(bundled).fileName());
+                jars.add(entry);
+            }
+            meta.add("jars", jars);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+                zip.putNextEntry(entry("fabric.mod.json"));
+                zip.write(meta.toString().getBytes(StandardCharsets.UTF_8));
+                for (String bundled : bundles) {
+                    zip.putNextEntry(entry("META-INF/jars/" + project(bundled).fileName()));
+                    zip.write(project(bundled).jar());
+                }
+                if (padding > 0) {
+                    byte[] noise = new byte[padding];
+                    new Random(slug.hashCode()).nextBytes(noise);
+                    zip.putNextEntry(entry("padding.bin"));
+                    zip.write(noise);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        private byte[] served() {
+            byte[] served = jar().clone();
+            if (tampered) {
+                served[served.length / 2] ^= 1;
+            }
+            return served;
+        }
+    }
+
+    /**
+     * Requests matching a path prefix are answered with an error status, times times or ALWAYS
+     */
+    private record Fault(String pathPrefix, int status, int retryAfterSeconds, AtomicInteger remaining) {
+        boolean take(String path) {
+            if (!path.startsWith(pathPrefix)) return false;
+            if (remaining.get() == ALWAYS) return true;
+            return remaining.getAndUpdate(n -> Math.max(0, n - 1)) > 0;
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, Project> projects = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final List<Fault> faults = new CopyOnWriteArrayList<>();
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger downloading = new AtomicInteger();
+    private final AtomicInteger peakDownloads = new AtomicInteger();
+    private volatile long latencyMs;
+    private volatile long bytesPerSecond;
+
+    ModrinthStandIn() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    // === Setup ===
+
+    Project project(String slug) {
+        synchronized (projects) {
+            Project project = projects.get(slug);
+            if (project == null) {
+                project = new Project(String.format("P%07d", projects.size() + 1), slug);
+                projects.put(slug, project);
+            }
+            return project;
+        }
+    }
+
+    /**
+     * Delay every response by this much, like a round-trip to a distant server
+     */
+    ModrinthStandIn latency(long ms) {
+        this.latencyMs = ms;
+        return this;
+    }
+
+    /**
+     * Send files no faster than this, 0 for no cap
+     */
+    ModrinthStandIn bandwidth(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    /**
+     * Answer requests under pathPrefix with the given status, times times or ALWAYS
+     */
+    ModrinthStandIn fail(String pathPrefix, int status, int times) {
+        faults.add(new Fault(pathPrefix, status, 0, new AtomicInteger(times)));
+        return this;
+    }
+
+    /**
+     * Answer requests under pathPrefix with 429 and a Retry-After, times times or ALWAYS
+     */
+    ModrinthStandIn rateLimit(String pathPrefix, int times, int retryAfterSeconds) {
+        faults.add(new Fault(pathPrefix, 429, retryAfterSeconds, new AtomicInteger(times)));
+        return this;
+    }
+
+    // === What clients see ===
+
+    String api() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v2";
+    }
+
+    /**
+     * The CDN mirror base serving the files of this stand-in
+     */
+    String cdn() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    List<String> requests() {
+        synchronized (requests) {
+            return new ArrayList<>(requests);
+        }
+    }
+
+    /**
+     * Requests whose "METHOD path" starts with prefix, e.g. "GET /data/"
+     */
+    long count(String prefix) {
+        return requests().stream().filter(r -> r.startsWith(prefix)).count();
+    }
+
+    /**
+     * The most file downloads that were in flight at once
+     */
+    int peakDownloads() {
+        return peakDownloads.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // === Serving ===
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            URI uri = exchange.getRequestURI();
+            String path = uri.getRawPath();
+            requests.add(exchange.getRequestMethod() + " " + path);
+            exchange.getRequestBody().readAllBytes();
+
+            if (latencyMs > 0) {
+                Thread.sleep(latencyMs);
+            }
+            for (Fault fault : faults) {
+                if (fault.take(path)) {
+                    if (fault.retryAfterSeconds() > 0) {
+                        exchange.getResponseHeaders().add("Retry-After", String.valueOf(fault.retryAfterSeconds()));
+                    }
+                    sendError(exchange, fault.status(), fault.status() == 429 ? "ratelimited" : "unavailable");
+                    return;
+                }
+            }
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+
+            List<String> parts = new ArrayList<>();
+            for (String part : path.split("/")) {
+                if (!part.isEmpty()) parts.add(URLDecoder.decode(part, StandardCharsets.UTF_8));
+            }
+            if (parts.size() == 5 && parts.get(0).equals("data")) {
+                Project project = byId(parts.get(1));
+                if (project != null && project.versionId.equals(parts.get(3)) && project.fileName().equals(parts.get(4))) {
+                    sendFile(exchange, project.served());
+                    return;
+                }
+            } else if (parts.size() >= 2 && parts.get(0).equals("v2")) {
+                JsonObject object = route(parts.subList(1, parts.size()), query(uri.getRawQuery()));
+                if (object != null) {
+                    sendJson(exchange, 200, object.has("array") ? object.get("array").toString() : object.toString());
+                    return;
+                }
+            }
+            sendError(exchange, 404, "not_found");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The response for an API path, or null for 404. Arrays come wrapped as {"array": [...]}.
+     */
+    private JsonObject route(List<String> parts, Map<String, String> query) {
+        switch (parts.get(0)) {
+            case "search" -> {
+                return search(query.getOrDefault("query", ""), Integer.parseInt(query.getOrDefault("limit", "10")),
+                    Integer.parseInt(query.getOrDefault("offset", "0")));
+            }
+            case "project" -> {
+                Project project = parts.size() > 1 ? bySlugOrId(parts.get(1)) : null;
+                if (project == null) return null;
+                if (parts.size() == 2) return projectJson(project);
+                if (parts.size() == 3 && parts.get(2).equals("version")) {
+                    JsonObject wrapped = new JsonObject();
+                    JsonArray versions = new JsonArray();
+                    versions.add(versionJson(project, query.get("loaders")));
+                    wrapped.add("array", versions);
+                    return wrapped;
+                }
+                if (parts.size() == 4 && parts.get(2).equals("version")
+                        && (parts.get(3).equals("1.0.0") || parts.get(3).equals(project.versionId))) {
+                    return versionJson(project, query.get("loaders"));
+                }
+                return null;
+            }
+            case "version" -> {
+                Project project = parts.size() == 2 ? byVersionId(parts.get(1)) : null;
+                return project != null ? versionJson(project, null) : null;
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    private JsonObject search(String query, int limit, int offset) {
+        List<Project> matches;
+        synchronized (projects) {
+            matches = projects.values().stream()
+                .filter(p -> p.slug.contains(query.toLowerCase()) || p.title().toLowerCase().contains(query.toLowerCase()))
+                .toList();
+        }
+        JsonObject result = SEARCH.deepCopy();
+        JsonArray hits = new JsonArray();
+        for (Project project : matches.subList(Math.min(offset, matches.size()), Math.min(offset + limit, matches.size()))) {
+            JsonObject hit = SEARCH_HIT.deepCopy();
+            hit.addProperty("project_id", project.id);
+            hit.addProperty("slug", project.slug);
+            hit.addProperty("title", project.title());
+            hit.addProperty("description", "Stand-in for " + project.slug);
+            hit.addProperty("downloads", 1000L * (matches.size() - matches.indexOf(project)));
+            hits.add(hit);
+        }
+        result.add("hits", hits);
+        result.addProperty("offset", offset);
+        result.addProperty("limit", limit);
+        result.addProperty("total_hits", matches.size());
+        return result;
+    }
+
+    private JsonObject projectJson(Project project) {
+        JsonObject json = PROJECT.deepCopy();
+        json.addProperty("id", project.id);
+        json.addProperty("slug", project.slug);
+        json.addProperty("title", project.title());
+        json.addProperty("description", "Stand-in for " + project.slug);
+        json.addProperty("thread_id", project.id);
+        JsonArray versions = new JsonArray();
+        versions.add(project.versionId);
+        json.add("versions", versions);
+        return json;
+    }
+
+    /**
+     * A project's version, with the dependencies for the loaders in the query's loaders filter
+     */
+    private JsonObject versionJson(Project project, String loaders) {
+        byte[] jar = project.jar();
+        JsonObject json = VERSION.deepCopy();
+        json.addProperty("id", project.versionId);
+        json.addProperty("project_id", project.id);
+        json.addProperty("name", project.title() + " 1.0.0");
+        json.addProperty("version_number", "1.0.0");
+
+        JsonObject file = json.getAsJsonArray("files").get(0).getAsJsonObject();
+        file.getAsJsonObject("hashes").addProperty("sha512", hex("SHA-512", jar));
+        file.getAsJsonObject("hashes").addProperty("sha1", hex("SHA-1", jar));
+        file.addProperty("url", "https://cdn.modrinth.com/data/" + project.id + "/versions/" + project.versionId
+            + "/" + project.fileName());
+        file.addProperty("filename", project.fileName());
+        file.addProperty("size", jar.length);
+
+        List<String> requires = new ArrayList<>(project.requires);
+        project.requiresOn.forEach((loader, slugs) -> {
+            if (loaders != null && loaders.contains("\"" + loader + "\"")) requires.addAll(slugs);
+        });
+        JsonArray dependencies = new JsonArray();
+        for (String dep : requires) {
+            JsonObject dependency = new JsonObject();
+            dependency.add("version_id", null);
+            dependency.addProperty("project_id", project(dep).id);
+            dependency.add("file_name", null);
+            dependency.addProperty("dependency_type", "required");
+            dependencies.add(dependency);
+        }
+        json.add("dependencies", dependencies);
+        return json;
+    }
+
+    private void sendFile(HttpExchange exchange, byte[] body) throws IOException, InterruptedException {
+        int now = downloading.incrementAndGet();
+        peakDownloads.accumulateAndGet(now, Math::max);
+        try {
+            exchange.getResponseHeaders().add("Content-Type", "application/java-archive");
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream out = exchange.getResponseBody();
+            int chunk = 8192;
+            for (int offset = 0; offset < body.length; offset += chunk) {
+                int length = Math.min(chunk, body.length - offset);
+                out.write(body, offset, length);
+                if (bytesPerSecond > 0) {
+                    Thread.sleep(length * 1000L / bytesPerSecond);
+                }
+            }
+        } finally {
+            downloading.decrementAndGet();
+        }
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String error) throws IOException {
+        JsonObject body = new JsonObject();
+        body.addProperty("error", error);
+        body.addProperty("description", "Stand-in answered HTTP " + status);
+        sendJson(exchange, status, body.toString());
+    }
+
+    // === Lookups ===
+
+    private Project bySlugOrId(String key) {
+        Project project = projects.get(key);
+        return project != null ? project : byId(key);
+    }
+
+    private Project byId(String id) {
+        synchronized (projects) {
+            return projects.values().stream().filter(p -> p.id.equals(id)).findFirst().orElse(null);
+        }
+    }
+
+    private Project byVersionId(String versionId) {
+        synchronized (projects) {
+            return projects.values().stream().filter(p -> p.versionId.equals(versionId)).findFirst().orElse(null);
+        }
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) return query;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    /**
+     * A zip entry with a fixed time, so every stand-in builds the same bytes for a project
+     */
+    private static ZipEntry entry(String name) {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(JAR_TIME);
+        return entry;
+    }
+
+    private static String hex(String algorithm, byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance(algorithm).digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static JsonObject fixture(String name) {
+        try (InputStream in = ModrinthStandIn.class.getResourceAsStream("/modrinth/" + name)) {
+            return JsonParser.parseString(new String(in.readAllBytes(), StandardCharsets.UTF_8)).getAsJsonObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
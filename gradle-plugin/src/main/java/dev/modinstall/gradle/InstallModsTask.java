@@ -0,0 +1,66 @@
+package dev.modinstall.gradle;
+
+import dev.modinstall.core.ModInstallClient;
+import dev.modinstall.core.ModVersion;
+import dev.modinstall.core.ProjectSettings;
+import dev.modinstall.core.Progress;
+import java.util.concurrent.CompletionException;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.DisableCachingByDefault;
+
+/**
+ * Installs the configured mods and their dependencies into the mods folder, in the Gradle daemon.
+ * Up to date as long as the mod list, Minecraft version and loader are unchanged and nothing
+ * in the mods folder was touched since the last run.
+ */
+@DisableCachingByDefault(because = "Downloads from Modrinth, the mods folder is not worth caching")
+public abstract class InstallModsTask extends DefaultTask {
+
+    @Input
+    public abstract ListProperty<String> getMods();
+
+    @Input
+    public abstract Property<String> getMinecraftVersion();
+
+    @Input
+    public abstract Property<String> getLoader();
+
+    @OutputDirectory
+    public abstract DirectoryProperty getModsDirectory();
+
+    @TaskAction
+    public void install() {
+        ProjectSettings project = new ProjectSettings(getMinecraftVersion().get(), getLoader().get(),
+            getModsDirectory().get().getAsFile().toPath());
+        Logger logger = getLogger();
+        Progress progress = new Progress() {
+            @Override
+            public void installed(ModVersion version) {
+                logger.lifecycle("Installed {} {}", version.title(), version.versionNumber());
+            }
+
+            @Override
+            public void warning(String message) {
+                logger.warn(message);
+            }
+        };
+
+        try (ModInstallClient client = new ModInstallClient()) {
+            client.onWarning(logger::warn);
+            for (String mod : getMods().get()) {
+                client.install(project, mod, progress).join();
+            }
+        } catch (CompletionException e) {
+            throw new GradleException("Could not install mods for " + project.loader() + " "
+                + project.minecraftVersion() + ": " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+}
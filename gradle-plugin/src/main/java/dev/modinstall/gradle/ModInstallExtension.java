@@ -0,0 +1,32 @@
+package dev.modinstall.gradle;
+
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+
+/**
+ * The modinstall { } block. Only mods is required, the rest defaults to what
+ * gradle.properties says, like the command line does.
+ *
+ * <pre>
+ * modinstall {
+ *     mods = ['jei', 'jade']
+ * }
+ * </pre>
+ */
+public abstract class ModInstallExtension {
+
+    /**
+     * Slugs, project IDs, slug@version or version IDs, as for "modinstall install"
+     */
+    public abstract ListProperty<String> getMods();
+
+    public abstract Property<String> getMinecraftVersion();
+
+    public abstract Property<String> getLoader();
+
+    /**
+     * Defaults to run/mods
+     */
+    public abstract DirectoryProperty getModsDirectory();
+}
@@ -0,0 +1,47 @@
+package dev.modinstall.gradle;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.provider.ProviderFactory;
+
+/**
+ * Adds the modinstall { } extension and the installMods task. Everything is wired lazily
+ * through providers, so applying the plugin costs nothing at configuration time and the task
+ * works with the configuration cache.
+ */
+public class ModInstallPlugin implements Plugin<Project> {
+
+    @Override
+    public void apply(Project project) {
+        ProviderFactory providers = project.getProviders();
+
+        ModInstallExtension extension = project.getExtensions().create("modinstall", ModInstallExtension.class);
+        extension.getMinecraftVersion().convention(providers.gradleProperty("minecraft_version")
+            .orElse(providers.gradleProperty("mc_version")));
+        extension.getLoader().convention(detectLoader(providers));
+        extension.getModsDirectory().convention(project.getLayout().getProjectDirectory().dir("run/mods"));
+
+        project.getTasks().register("installMods", InstallModsTask.class, task -> {
+            task.setGroup("modinstall");
+            task.setDescription("Installs the mods listed in modinstall { mods = [...] } and their dependencies.");
+            task.getMods().set(extension.getMods());
+            task.getMinecraftVersion().set(extension.getMinecraftVersion());
+            task.getLoader().set(extension.getLoader());
+            task.getModsDirectory().set(extension.getModsDirectory());
+        });
+    }
+
+    /**
+     * Same order as the command line: NeoForge, Fabric, Forge, Quilt, else Forge
+     */
+    private static Provider<String> detectLoader(ProviderFactory providers) {
+        return providers.gradleProperty("neoforge_version")
+            .orElse(providers.gradleProperty("neo_version")).map(v -> "neoforge")
+            .orElse(providers.gradleProperty("fabric_version")
+                .orElse(providers.gradleProperty("fabric_loader_version")).map(v -> "fabric"))
+            .orElse(providers.gradleProperty("forge_version").map(v -> "forge"))
+            .orElse(providers.gradleProperty("quilt_version").map(v -> "quilt"))
+            .orElse("forge");
+    }
+}
@@ -1,12 +1,11 @@
 package dev.modinstall;
 
-import com.google.gson.*;
+import dev.modinstall.core.*;
 import java.io.*;
-import java.net.*;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
-import java.util.jar.*;
-import java.util.regex.*;
+import java.util.concurrent.*;
 import java.util.stream.*;
 
 /**
@@ -15,9 +14,22 @@ import java.util.stream.*;
  */
 public class ModInstall {
     
-    private static final String MODRINTH_API = "https://api.modrinth.com/v2";
-    private static final String USER_AGENT = "ModInstall/1.0.0 (github.com/modinstall)";
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    // Let a jar that is still being copied settle before re-reading it
+    private static final long WATCH_SETTLE_MS = 50;
+    
+    // Directories never holding a mod project, skipped while discovering a workspace.
+    // "common" is the shared source set of multi-loader layouts and has no run folder.
+    private static final Set<String> WORKSPACE_SKIP = Set.of(
+        "build", "run", "out", "bin", "src", "node_modules", "buildSrc", "common");
+    
+    // Commands worth connecting to Modrinth for while the project is detected
+    private static final Set<String> NETWORK_COMMANDS = Set.of(
+        "install", "i", "add", "search", "s", "find", "import", "export", "workspace", "ws");
+    private static final Set<String> INSTALL_COMMANDS = Set.of("install", "i", "add");
+    
+    // Commands that read the manifest, which is brought up to date in the background meanwhile
+    private static final Set<String> MANIFEST_COMMANDS = Set.of(
+        "install", "i", "add", "list", "l", "ls", "remove", "r", "rm", "uninstall", "clean");
     
     // ANSI Color Codes
     private static final String RESET = "\u001B[0m";
@@ -86,16 +98,164 @@ public class ModInstall {
         return encoding.toUpperCase().contains("UTF");
     }
     
+    // All output goes through the renderer, which owns stdout
+    private static final Renderer OUT = new Renderer(Renderer.detectMode(), useUnicode);
+    
+    // One client for the whole command, so every lookup is made once
+    private static final ModInstallClient CLIENT = new ModInstallClient();
+    
     private String minecraftVersion;
     private String loader;
+    private String loaderVersion;
     private Path modsFolder;
     private Path projectRoot;
     
+    /**
+     * Shows what the core reports: steps, found and installed lines, and a progress bar per
+     * download. With many parallel downloads (import, workspace) each finished file gets a
+     * line instead of a step announcing it.
+     */
+    private static final class ConsoleProgress implements Progress {
+        private final boolean announceDownloads;
+        private final Map<String, Renderer.Bar> bars = new ConcurrentHashMap<>();
+        private boolean started;
+        
+        ConsoleProgress(boolean announceDownloads) {
+            this.announceDownloads = announceDownloads;
+        }
+        
+        @Override
+        public void status(String message) {
+            step(message);
+        }
+        
+        @Override
+        public void waiting(Path modsFolder) {
+            info("Waiting for another ModInstall using " + DIM + modsFolder + RESET + "...");
+        }
+        
+        @Override
+        public void resolving(String mod) {
+            // A blank line between mods, and between a mod and each of its dependencies
+            if (started) OUT.println();
+            started = true;
+            step("Searching for " + BOLD + mod + RESET + "...");
+        }
+        
+        @Override
+        public void resolved(ModVersion version) {
+            info("Found: " + BOLD + BRIGHT_CYAN + version.title() + RESET + DIM + " (" + version.slug() + ")" + RESET);
+        }
+        
+        @Override
+        public void alreadyInstalled(ModVersion version) {
+            ModInstall.warning("Already installed: " + version.fileName());
+        }
+        
+        @Override
+        public void dependencyProvided(ModVersion parent, String slug, String fileName) {
+            bullet(DIM + slug + " already provided" + RESET);
+        }
+        
+        @Override
+        public void installingDependencies(ModVersion parent) {
+            OUT.println();
+            info("Installing required dependencies of " + BOLD + parent.title() + RESET + "...");
+        }
+        
+        @Override
+        public void downloadStarted(String fileName, long size) {
+            if (announceDownloads) {
+                step("Downloading " + BOLD + fileName + RESET + DIM + " (" + formatSize(size) + ")" + RESET);
+            }
+            bars.put(fileName, OUT.bar(fileName, size));
+        }
+        
+        @Override
+        public void downloadProgress(String fileName, long bytes) {
+            Renderer.Bar bar = bars.get(fileName);
+            if (bar != null) bar.advance(bytes);
+        }
+        
+        @Override
+        public void downloadFinished(String fileName, long size) {
+            Renderer.Bar bar = bars.remove(fileName);
+            if (bar != null) bar.finish();
+            if (!announceDownloads) {
+                success(fileName + DIM + " (" + formatSize(size) + ")" + RESET);
+            }
+        }
+        
+        @Override
+        public void downloadFailed(String fileName, IOException error) {
+            Renderer.Bar bar = bars.remove(fileName);
+            if (bar != null) bar.fail();
+        }
+        
+        @Override
+        public void installed(ModVersion version) {
+            success(BOLD + version.title() + RESET + " " + GREEN + "v" + version.versionNumber() + RESET + " installed!");
+        }
+        
+        @Override
+        public void warning(String message) {
+            ModInstall.warning(message);
+        }
+    }
+    
+    /**
+     * Incremental view of the mods folder's dependency graph. Adding or removing a jar
+     * only touches that jar's own IDs, so a change costs O(its dependencies).
+     */
+    private static final class ModGraph {
+        private final Map<Path, JarMeta> jars = new HashMap<>();
+        private final Map<String, Integer> providers = new HashMap<>();
+        private final Map<String, Integer> dependents = new HashMap<>();
+        
+        void put(Path jar, JarMeta meta) {
+            remove(jar);
+            jars.put(jar, meta);
+            for (String id : meta.provides()) providers.merge(id, 1, Integer::sum);
+            for (String dep : meta.dependencies()) dependents.merge(dep, 1, Integer::sum);
+        }
+        
+        void remove(Path jar) {
+            JarMeta meta = jars.remove(jar);
+            if (meta == null) return;
+            for (String id : meta.provides()) providers.computeIfPresent(id, (k, n) -> n > 1 ? n - 1 : null);
+            for (String dep : meta.dependencies()) dependents.computeIfPresent(dep, (k, n) -> n > 1 ? n - 1 : null);
+        }
+        
+        /**
+         * Required mod IDs no jar provides
+         */
+        Set<String> unmet() {
+            Set<String> unmet = new TreeSet<>();
+            for (String dep : dependents.keySet()) {
+                if (!providers.containsKey(dep)) unmet.add(dep);
+            }
+            return unmet;
+        }
+    }
+    
     public static void main(String[] args) {
-        // Enable ANSI on Windows
-        enableAnsiWindows();
+        CLIENT.onWarning(ModInstall::warning);
+        try {
+            run(args);
+        } finally {
+            // Let background lookups land in the cache, then flush everything still queued for the terminal
+            CLIENT.close();
+            OUT.close();
+        }
+    }
+    
+    private static void run(String[] args) {
+        // Enable ANSI on Windows. That spawns a process, so it runs while the command gets
+        // going and is waited for before the first output.
+        CompletableFuture<Void> console = CompletableFuture.runAsync(ModInstall::enableAnsiWindows);
         
         if (args.length == 0) {
+            console.join();
             printBanner();
             printHelp();
             return;
@@ -105,15 +265,43 @@ public class ModInstall {
         
         // Handle help immediately without requiring project structure
         if (command.equals("help") || command.equals("-h") || command.equals("--help")) {
+            console.join();
             printBanner();
             printHelp();
             return;
         }
         
+        // Connect to Modrinth while the project is detected, and look up what install was
+        // given as far as that doesn't need the project
+        if (NETWORK_COMMANDS.contains(command) || Arrays.asList(args).contains("--fetch")) {
+            CLIENT.warmUp();
+        }
+        if (INSTALL_COMMANDS.contains(command)) {
+            for (int i = 1; i < args.length; i++) {
+                CLIENT.prefetch(args[i]);
+            }
+        }
+        
+        // Workspace mode spans many projects, so it doesn't need one of its own
+        if (command.equals("workspace") || command.equals("ws")) {
+            console.join();
+            try {
+                runWorkspace(args);
+            } catch (Exception e) {
+                error(e.getMessage());
+            }
+            return;
+        }
+        
         ModInstall installer = new ModInstall();
         
         try {
             installer.detectProject();
+            if (MANIFEST_COMMANDS.contains(command)) {
+                CLIENT.index(installer.settings());
+            }
+            console.join();
+            installer.printProject();
             
             switch (command) {
                 case "install", "i", "add" -> {
@@ -121,17 +309,43 @@ public class ModInstall {
                         error("Usage: modinstall install <mod-name> [mod-name2] ...");
                         return;
                     }
+                    Progress progress = new ConsoleProgress(true);
                     for (int i = 1; i < args.length; i++) {
-                        installer.installMod(args[i]);
-                        if (i < args.length - 1) System.out.println();
+                        installer.installMod(args[i], progress);
                     }
                 }
                 case "search", "s", "find" -> {
                     if (args.length < 2) {
-                        error("Usage: modinstall search <query>");
+                        error("Usage: modinstall search <query> [--limit n] [--page n]");
+                        return;
+                    }
+                    List<String> terms = new ArrayList<>();
+                    int limit = 10;
+                    int page = 1;
+                    for (int i = 1; i < args.length; i++) {
+                        if ((args[i].equals("--limit") || args[i].equals("--page")) && i + 1 < args.length) {
+                            int value;
+                            try {
+                                value = Integer.parseInt(args[i + 1]);
+                            } catch (NumberFormatException e) {
+                                value = 0;
+                            }
+                            if (value < 1) {
+                                error(args[i] + " expects a positive number");
+                                return;
+                            }
+                            if (args[i].equals("--limit")) limit = Math.min(value, 100);
+                            else page = value;
+                            i++;
+                        } else {
+                            terms.add(args[i]);
+                        }
+                    }
+                    if (terms.isEmpty()) {
+                        error("Usage: modinstall search <query> [--limit n] [--page n]");
                         return;
                     }
-                    installer.searchMods(String.join(" ", Arrays.copyOfRange(args, 1, args.length)));
+                    installer.searchMods(String.join(" ", terms), limit, page);
                 }
                 case "list", "l", "ls" -> installer.listInstalled();
                 case "remove", "r", "rm", "uninstall" -> {
@@ -141,7 +355,22 @@ public class ModInstall {
                     }
                     installer.removeMod(args[1]);
                 }
-                case "clean" -> installer.cleanUnused();
+                case "import" -> {
+                    if (args.length < 2) {
+                        error("Usage: modinstall import <file.mrpack>");
+                        return;
+                    }
+                    installer.importPack(Paths.get(args[1]));
+                }
+                case "export" -> {
+                    if (args.length < 2) {
+                        error("Usage: modinstall export <file.mrpack|file.json>");
+                        return;
+                    }
+                    installer.exportMods(Paths.get(args[1]));
+                }
+                case "clean" -> installer.cleanUnused(Arrays.asList(args).contains("--dry-run"));
+                case "watch", "w" -> installer.watchMods(Arrays.asList(args).contains("--fetch"));
                 case "info", "status" -> installer.showProjectInfo();
                 default -> {
                     error("Unknown command: " + args[0]);
@@ -149,6 +378,7 @@ public class ModInstall {
                 }
             }
         } catch (Exception e) {
+            console.join();
             error(e.getMessage());
         }
     }
@@ -163,83 +393,88 @@ public class ModInstall {
     }
     
     private static void printBanner() {
-        System.out.println();
+        OUT.println();
         if (useUnicode) {
-            System.out.println(BRIGHT_MAGENTA + "    ╔═══════════════════════════════════════════════════════════════╗" + RESET);
-            System.out.println(BRIGHT_MAGENTA + "    ║" + RESET + BOLD + BRIGHT_CYAN + "  ███╗   ███╗ ██████╗ ██████╗ ██╗███╗   ██╗███████╗████████╗   " + RESET + BRIGHT_MAGENTA + "║" + RESET);
-            System.out.println(BRIGHT_MAGENTA + "    ║" + RESET + BOLD + BRIGHT_CYAN + "  ████╗ ████║██╔═══██╗██╔══██╗██║████╗  ██║██╔════╝╚══██╔══╝   " + RESET + BRIGHT_MAGENTA + "║" + RESET);
-            System.out.println(BRIGHT_MAGENTA + "    ║" + RESET + BOLD + BRIGHT_CYAN + "  ██╔████╔██║██║   ██║██║  ██║██║██╔██╗ ██║███████╗   ██║      " + RESET + BRIGHT_MAGENTA + "║" + RESET);
-            System.out.println(BRIGHT_MAGENTA + "    ║" + RESET + BOLD + BRIGHT_CYAN + "  ██║╚██╔╝██║██║   ██║██║  ██║██║██║╚██╗██║╚════██║   ██║      " + RESET + BRIGHT_MAGENTA + "║" + RESET);
-            System.out.println(BRIGHT_MAGENTA + "    ║" + RESET + BOLD + BRIGHT_CYAN + "  ██║ ╚═╝ ██║╚██████╔╝██████╔╝██║██║ ╚████║███████║   ██║      " + RESET + BRIGHT_MAGENTA + "║" + RESET);
-            System.out.println(BRIGHT_MAGENTA + "    ║" + RESET + BOLD + BRIGHT_CYAN + "  ╚═╝     ╚═╝ ╚═════╝ ╚═════╝ ╚═╝╚═╝  ╚═══╝╚══════╝   ╚═╝      " + RESET + BRIGHT_MAGENTA + "║" + RESET);
-            System.out.println(BRIGHT_MAGENTA + "    ╠═══════════════════════════════════════════════════════════════╣" + RESET);
-            System.out.println(BRIGHT_MAGENTA + "    ║" + RESET + DIM + "         Minecraft Mod Installer - Powered by Modrinth         " + RESET + BRIGHT_MAGENTA + "║" + RESET);
-            System.out.println(BRIGHT_MAGENTA + "    ╚═══════════════════════════════════════════════════════════════╝" + RESET);
+            OUT.println(BRIGHT_MAGENTA + "    ╔═══════════════════════════════════════════════════════════════╗" + RESET);
+            OUT.println(BRIGHT_MAGENTA + "    ║" + RESET + BOLD + BRIGHT_CYAN + "  ███╗   ███╗ ██████╗ ██████╗ ██╗███╗   ██╗███████╗████████╗   " + RESET + BRIGHT_MAGENTA + "║" + RESET);
+            OUT.println(BRIGHT_MAGENTA + "    ║" + RESET + BOLD + BRIGHT_CYAN + "  ████╗ ████║██╔═══██╗██╔══██╗██║████╗  ██║██╔════╝╚══██╔══╝   " + RESET + BRIGHT_MAGENTA + "║" + RESET);
+            OUT.println(BRIGHT_MAGENTA + "    ║" + RESET + BOLD + BRIGHT_CYAN + "  ██╔████╔██║██║   ██║██║  ██║██║██╔██╗ ██║███████╗   ██║      " + RESET + BRIGHT_MAGENTA + "║" + RESET);
+            OUT.println(BRIGHT_MAGENTA + "    ║" + RESET + BOLD + BRIGHT_CYAN + "  ██║╚██╔╝██║██║   ██║██║  ██║██║██║╚██╗██║╚════██║   ██║      " + RESET + BRIGHT_MAGENTA + "║" + RESET);
+            OUT.println(BRIGHT_MAGENTA + "    ║" + RESET + BOLD + BRIGHT_CYAN + "  ██║ ╚═╝ ██║╚██████╔╝██████╔╝██║██║ ╚████║███████║   ██║      " + RESET + BRIGHT_MAGENTA + "║" + RESET);
+            OUT.println(BRIGHT_MAGENTA + "    ║" + RESET + BOLD + BRIGHT_CYAN + "  ╚═╝     ╚═╝ ╚═════╝ ╚═════╝ ╚═╝╚═╝  ╚═══╝╚══════╝   ╚═╝      " + RESET + BRIGHT_MAGENTA + "║" + RESET);
+            OUT.println(BRIGHT_MAGENTA + "    ╠═══════════════════════════════════════════════════════════════╣" + RESET);
+            OUT.println(BRIGHT_MAGENTA + "    ║" + RESET + DIM + "         Minecraft Mod Installer - Powered by Modrinth         " + RESET + BRIGHT_MAGENTA + "║" + RESET);
+            OUT.println(BRIGHT_MAGENTA + "    ╚═══════════════════════════════════════════════════════════════╝" + RESET);
         } else {
             // ASCII fallback
-            System.out.println(BRIGHT_MAGENTA + "    +===================================================================+" + RESET);
-            System.out.println(BRIGHT_MAGENTA + "    |" + RESET + BOLD + BRIGHT_CYAN + "   __  __  ___  ___  ___ _  _  ___ _____ _   _    _    " + RESET + BRIGHT_MAGENTA + "          |" + RESET);
-            System.out.println(BRIGHT_MAGENTA + "    |" + RESET + BOLD + BRIGHT_CYAN + "  |  \\/  |/ _ \\|   \\|_ _| \\| |/ __|_   _/_\\ | |  | |   " + RESET + BRIGHT_MAGENTA + "          |" + RESET);
-            System.out.println(BRIGHT_MAGENTA + "    |" + RESET + BOLD + BRIGHT_CYAN + "  | |\\/| | (_) | |) || || .` |\\__ \\ | |/ _ \\| |__| |__ " + RESET + BRIGHT_MAGENTA + "          |" + RESET);
-            System.out.println(BRIGHT_MAGENTA + "    |" + RESET + BOLD + BRIGHT_CYAN + "  |_|  |_|\\___/|___/|___|_|\\_||___/ |_/_/ \\_\\____|____|" + RESET + BRIGHT_MAGENTA + "          |" + RESET);
-            System.out.println(BRIGHT_MAGENTA + "    +===================================================================+" + RESET);
-            System.out.println(BRIGHT_MAGENTA + "    |" + RESET + DIM + "         Minecraft Mod Installer - Powered by Modrinth         " + RESET + BRIGHT_MAGENTA + "|" + RESET);
-            System.out.println(BRIGHT_MAGENTA + "    +===================================================================+" + RESET);
-        }
-        System.out.println();
+            OUT.println(BRIGHT_MAGENTA + "    +===================================================================+" + RESET);
+            OUT.println(BRIGHT_MAGENTA + "    |" + RESET + BOLD + BRIGHT_CYAN + "   __  __  ___  ___  ___ _  _  ___ _____ _   _    _    " + RESET + BRIGHT_MAGENTA + "          |" + RESET);
+            OUT.println(BRIGHT_MAGENTA + "    |" + RESET + BOLD + BRIGHT_CYAN + "  |  \\/  |/ _ \\|   \\|_ _| \\| |/ __|_   _/_\\ | |  | |   " + RESET + BRIGHT_MAGENTA + "          |" + RESET);
+            OUT.println(BRIGHT_MAGENTA + "    |" + RESET + BOLD + BRIGHT_CYAN + "  | |\\/| | (_) | |) || || .` |\\__ \\ | |/ _ \\| |__| |__ " + RESET + BRIGHT_MAGENTA + "          |" + RESET);
+            OUT.println(BRIGHT_MAGENTA + "    |" + RESET + BOLD + BRIGHT_CYAN + "  |_|  |_|\\___/|___/|___|_|\\_||___/ |_/_/ \\_\\____|____|" + RESET + BRIGHT_MAGENTA + "          |" + RESET);
+            OUT.println(BRIGHT_MAGENTA + "    +===================================================================+" + RESET);
+            OUT.println(BRIGHT_MAGENTA + "    |" + RESET + DIM + "         Minecraft Mod Installer - Powered by Modrinth         " + RESET + BRIGHT_MAGENTA + "|" + RESET);
+            OUT.println(BRIGHT_MAGENTA + "    +===================================================================+" + RESET);
+        }
+        OUT.println();
     }
     
     private static void printHelp() {
         String line = useUnicode ? repeat("─", 55) : repeat("-", 55);
         
-        System.out.println(BOLD + WHITE + "  USAGE" + RESET);
-        System.out.println(DIM + "  " + line + RESET);
-        System.out.println("    " + BRIGHT_CYAN + "modinstall" + RESET + " " + YELLOW + "<command>" + RESET + " " + DIM + "[arguments]" + RESET);
-        System.out.println();
-        
-        System.out.println(BOLD + WHITE + "  COMMANDS" + RESET);
-        System.out.println(DIM + "  " + line + RESET);
-        System.out.println("    " + BRIGHT_GREEN + "install" + RESET + ", " + DIM + "i, add" + RESET + "    " + WHITE + "<mod> [mod2...]" + RESET + "  Install mod(s)");
-        System.out.println("    " + BRIGHT_YELLOW + "search" + RESET + ", " + DIM + "s, find" + RESET + "   " + WHITE + "<query>" + RESET + "         Search for mods");
-        System.out.println("    " + BRIGHT_BLUE + "list" + RESET + ", " + DIM + "l, ls" + RESET + "                        List installed mods");
-        System.out.println("    " + BRIGHT_RED + "remove" + RESET + ", " + DIM + "r, rm" + RESET + "     " + WHITE + "<mod>" + RESET + "           Remove a mod");
-        System.out.println("    " + BRIGHT_MAGENTA + "clean" + RESET + "                             Remove unused libraries");
-        System.out.println("    " + BRIGHT_MAGENTA + "info" + RESET + ", " + DIM + "status" + RESET + "                      Show project info");
-        System.out.println();
-        
-        System.out.println(BOLD + WHITE + "  EXAMPLES" + RESET);
-        System.out.println(DIM + "  " + line + RESET);
-        System.out.println("    " + DIM + "$" + RESET + " modinstall " + BRIGHT_GREEN + "install" + RESET + " jei");
-        System.out.println("    " + DIM + "$" + RESET + " modinstall " + BRIGHT_GREEN + "i" + RESET + " jei jade create");
-        System.out.println("    " + DIM + "$" + RESET + " modinstall " + BRIGHT_YELLOW + "search" + RESET + " optimization");
-        System.out.println("    " + DIM + "$" + RESET + " modinstall " + BRIGHT_BLUE + "list" + RESET);
-        System.out.println();
+        OUT.println(BOLD + WHITE + "  USAGE" + RESET);
+        OUT.println(DIM + "  " + line + RESET);
+        OUT.println("    " + BRIGHT_CYAN + "modinstall" + RESET + " " + YELLOW + "<command>" + RESET + " " + DIM + "[arguments]" + RESET);
+        OUT.println();
+        
+        OUT.println(BOLD + WHITE + "  COMMANDS" + RESET);
+        OUT.println(DIM + "  " + line + RESET);
+        OUT.println("    " + BRIGHT_GREEN + "install" + RESET + ", " + DIM + "i, add" + RESET + "    " + WHITE + "<mod> [mod2...]" + RESET + "  Install mod(s)");
+        OUT.println("    " + BRIGHT_YELLOW + "search" + RESET + ", " + DIM + "s, find" + RESET + "   " + WHITE + "<query>" + RESET + "         Search for mods");
+        OUT.println("    " + BRIGHT_BLUE + "list" + RESET + ", " + DIM + "l, ls" + RESET + "                        List installed mods");
+        OUT.println("    " + BRIGHT_RED + "remove" + RESET + ", " + DIM + "r, rm" + RESET + "     " + WHITE + "<mod>" + RESET + "           Remove a mod");
+        OUT.println("    " + BRIGHT_MAGENTA + "clean" + RESET + "             " + WHITE + "[--dry-run]" + RESET + "     Remove unused libraries");
+        OUT.println("    " + BRIGHT_CYAN + "watch" + RESET + ", " + DIM + "w" + RESET + "         " + WHITE + "[--fetch]" + RESET + "       Report missing deps as run/mods changes");
+        OUT.println("    " + BRIGHT_GREEN + "import" + RESET + "            " + WHITE + "<file.mrpack>" + RESET + "   Import a Modrinth modpack into run/");
+        OUT.println("    " + BRIGHT_BLUE + "export" + RESET + "            " + WHITE + "<file>" + RESET + "          Export mods as .mrpack or .json");
+        OUT.println("    " + BRIGHT_MAGENTA + "info" + RESET + ", " + DIM + "status" + RESET + "                      Show project info");
+        OUT.println("    " + BRIGHT_CYAN + "workspace" + RESET + ", " + DIM + "ws" + RESET + " " + WHITE + "install <mod...>" + RESET + "  Install into every project below");
+        OUT.println();
+        
+        OUT.println(BOLD + WHITE + "  EXAMPLES" + RESET);
+        OUT.println(DIM + "  " + line + RESET);
+        OUT.println("    " + DIM + "$" + RESET + " modinstall " + BRIGHT_GREEN + "install" + RESET + " jei");
+        OUT.println("    " + DIM + "$" + RESET + " modinstall " + BRIGHT_GREEN + "i" + RESET + " jei jade create");
+        OUT.println("    " + DIM + "$" + RESET + " modinstall " + BRIGHT_YELLOW + "search" + RESET + " optimization");
+        OUT.println("    " + DIM + "$" + RESET + " modinstall " + BRIGHT_BLUE + "list" + RESET);
+        OUT.println("    " + DIM + "$" + RESET + " modinstall " + BRIGHT_CYAN + "ws" + RESET + " install jei");
+        OUT.println();
     }
     
     // === Styled output helpers ===
     
     private static void info(String msg) {
-        System.out.println("  " + BRIGHT_CYAN + "[i]" + RESET + " " + msg);
+        OUT.println("info", "  " + BRIGHT_CYAN + "[i]" + RESET + " " + msg, msg);
     }
     
     private static void success(String msg) {
-        System.out.println("  " + BRIGHT_GREEN + CHECK + RESET + "  " + msg);
+        OUT.println("success", "  " + BRIGHT_GREEN + CHECK + RESET + "  " + msg, msg);
     }
     
     private static void warning(String msg) {
-        System.out.println("  " + BRIGHT_YELLOW + WARN + RESET + "  " + YELLOW + msg + RESET);
+        OUT.println("warning", "  " + BRIGHT_YELLOW + WARN + RESET + "  " + YELLOW + msg + RESET, msg);
     }
     
     private static void error(String msg) {
-        System.out.println("  " + BRIGHT_RED + CROSS + RESET + "  " + RED + msg + RESET);
+        OUT.println("error", "  " + BRIGHT_RED + CROSS + RESET + "  " + RED + msg + RESET, msg);
     }
     
     private static void step(String msg) {
-        System.out.println("  " + BRIGHT_MAGENTA + ARROW + RESET + "  " + msg);
+        OUT.println("step", "  " + BRIGHT_MAGENTA + ARROW + RESET + "  " + msg, msg);
     }
     
     private static void bullet(String msg) {
-        System.out.println("     " + DIM + BULLET + RESET + " " + msg);
+        OUT.println("     " + DIM + BULLET + RESET + " " + msg);
     }
     
     /**
@@ -252,29 +487,23 @@ public class ModInstall {
             throw new IOException("Could not find gradle.properties. Run this from a Minecraft mod project directory.");
         }
         
-        Path gradleProps = projectRoot.resolve("gradle.properties");
         Properties props = new Properties();
         
-        try (InputStream is = Files.newInputStream(gradleProps)) {
+        try (InputStream is = Files.newInputStream(projectRoot.resolve("gradle.properties"))) {
             props.load(is);
         }
         
-        // Detect Minecraft version
-        minecraftVersion = props.getProperty("minecraft_version");
-        if (minecraftVersion == null) {
-            minecraftVersion = props.getProperty("mc_version");
-        }
+        loadProject(projectRoot, props);
         if (minecraftVersion == null) {
             throw new IOException("Could not detect minecraft_version from gradle.properties");
         }
-        
-        // Detect loader
-        loader = detectLoader(props, projectRoot);
-        
-        // Find mods folder (run/mods)
-        modsFolder = projectRoot.resolve("run").resolve("mods");
         Files.createDirectories(modsFolder);
-        
+    }
+    
+    /**
+     * Print what detectProject found
+     */
+    private void printProject() {
         // Print detection info - fixed width box
         int boxWidth = 48;
         String mcValue = minecraftVersion;
@@ -282,15 +511,35 @@ public class ModInstall {
         String modsValue = shortenPath(modsFolder.toString(), 26);
         String hLine = repeat(BOX_H, boxWidth);
         
-        System.out.println();
-        System.out.println("  " + DIM + BOX_TL + hLine + BOX_TR + RESET);
-        System.out.println("  " + DIM + BOX_V + RESET + BOLD + "  Project Detected" + RESET + repeat(" ", boxWidth - 18) + DIM + BOX_V + RESET);
-        System.out.println("  " + DIM + BOX_LT + hLine + BOX_RT + RESET);
-        System.out.println(formatBoxRow(CYAN, BULLET, "Minecraft", BRIGHT_GREEN + BOLD + mcValue + RESET, boxWidth));
-        System.out.println(formatBoxRow(YELLOW, BULLET, "Loader", BRIGHT_YELLOW + BOLD + loaderValue + RESET, boxWidth));
-        System.out.println(formatBoxRow(BLUE, BULLET, "Mods", DIM + modsValue + RESET, boxWidth));
-        System.out.println("  " + DIM + BOX_BL + hLine + BOX_BR + RESET);
-        System.out.println();
+        OUT.println();
+        OUT.println("  " + DIM + BOX_TL + hLine + BOX_TR + RESET);
+        OUT.println("  " + DIM + BOX_V + RESET + BOLD + "  Project Detected" + RESET + repeat(" ", boxWidth - 18) + DIM + BOX_V + RESET);
+        OUT.println("  " + DIM + BOX_LT + hLine + BOX_RT + RESET);
+        OUT.println(formatBoxRow(CYAN, BULLET, "Minecraft", BRIGHT_GREEN + BOLD + mcValue + RESET, boxWidth));
+        OUT.println(formatBoxRow(YELLOW, BULLET, "Loader", BRIGHT_YELLOW + BOLD + loaderValue + RESET, boxWidth));
+        OUT.println(formatBoxRow(BLUE, BULLET, "Mods", DIM + modsValue + RESET, boxWidth));
+        OUT.println("  " + DIM + BOX_BL + hLine + BOX_BR + RESET);
+        OUT.println();
+    }
+    
+    /**
+     * Fill in Minecraft version, loader and mods folder from the project's properties
+     */
+    private void loadProject(Path root, Properties props) {
+        projectRoot = root;
+        
+        // Detect Minecraft version
+        minecraftVersion = props.getProperty("minecraft_version");
+        if (minecraftVersion == null) {
+            minecraftVersion = props.getProperty("mc_version");
+        }
+        
+        // Detect loader
+        loader = detectLoader(props, root);
+        loaderVersion = detectLoaderVersion(props);
+        
+        // Find mods folder (run/mods)
+        modsFolder = root.resolve("run").resolve("mods");
     }
     
     /**
@@ -342,228 +591,257 @@ public class ModInstall {
     }
     
     /**
-     * Install a mod from Modrinth
+     * Loader version as written in a modpack index, or null if gradle.properties doesn't say
      */
-    private void installMod(String modSlug) throws IOException {
-        step("Searching for " + BOLD + modSlug + RESET + "...");
-        
-        // Search for the mod (Force project_type:mod)
-        String facets = "[[\"categories:" + loader + "\"],[\"versions:" + minecraftVersion + "\"],[\"project_type:mod\"]]";
-        String searchUrl = MODRINTH_API + "/search?query=" + URLEncoder.encode(modSlug, "UTF-8") 
-            + "&facets=" + URLEncoder.encode(facets, "UTF-8")
-            + "&limit=5";
-        
-        JsonObject searchResult = httpGetJson(searchUrl);
-        JsonArray hits = searchResult.getAsJsonArray("hits");
-        
-        if (hits.isEmpty()) {
-            error("No mod found for '" + modSlug + "' on " + loader + " " + minecraftVersion);
-            return;
-        }
-        
-        // Get the first matching mod
-        JsonObject mod = hits.get(0).getAsJsonObject();
-        String projectId = mod.get("project_id").getAsString();
-        String title = mod.get("title").getAsString();
-        String slug = mod.get("slug").getAsString();
-        
-        info("Found: " + BOLD + BRIGHT_CYAN + title + RESET + DIM + " (" + slug + ")" + RESET);
-        
-        // Get versions for this mod
-        String loaders = "[\"" + loader + "\"]";
-        String gameVersions = "[\"" + minecraftVersion + "\"]";
-        String versionsUrl = MODRINTH_API + "/project/" + projectId + "/version"
-            + "?loaders=" + URLEncoder.encode(loaders, "UTF-8")
-            + "&game_versions=" + URLEncoder.encode(gameVersions, "UTF-8");
-        
-        JsonArray versions = httpGetJsonArray(versionsUrl);
-        
-        if (versions.isEmpty()) {
-            error("No compatible version found for " + loader + " " + minecraftVersion);
-            return;
+    private String detectLoaderVersion(Properties props) {
+        String version = switch (loader) {
+            case "fabric" -> props.getProperty("fabric_loader_version", props.getProperty("loader_version"));
+            case "quilt" -> props.getProperty("quilt_loader_version", props.getProperty("quilt_version"));
+            case "neoforge" -> props.getProperty("neoforge_version", props.getProperty("neo_version"));
+            default -> props.getProperty("forge_version");
+        };
+        // Forge versions are often written as "<mc>-<forge>"
+        if (version != null && minecraftVersion != null && version.startsWith(minecraftVersion + "-")) {
+            version = version.substring(minecraftVersion.length() + 1);
         }
-        
-        // Get the latest version
-        JsonObject version = versions.get(0).getAsJsonObject();
-        JsonArray files = version.getAsJsonArray("files");
-        
-        // Find primary file
-        JsonObject primaryFile = null;
-        for (JsonElement fileEl : files) {
-            JsonObject file = fileEl.getAsJsonObject();
-            if (file.get("primary").getAsBoolean()) {
-                primaryFile = file;
-                break;
-            }
+        return version;
+    }
+    
+    /**
+     * The detected project as the core sees it
+     */
+    private ProjectSettings settings() {
+        return new ProjectSettings(minecraftVersion, loader, loaderVersion, modsFolder);
+    }
+    
+    /**
+     * Wait for a core operation, rethrowing what it failed with
+     */
+    private static <T> T await(CompletableFuture<T> operation) throws IOException {
+        try {
+            return operation.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw e;
         }
-        if (primaryFile == null && !files.isEmpty()) {
-            primaryFile = files.get(0).getAsJsonObject();
+    }
+    
+    /**
+     * Install a mod from Modrinth with its required dependencies. A mod that can't be found
+     * is reported and skipped, so the next one on the command line still gets installed.
+     */
+    private void installMod(String mod, Progress progress) throws IOException {
+        try {
+            await(CLIENT.install(settings(), mod, progress));
+        } catch (ModNotFoundException e) {
+            error(e.getMessage());
         }
+    }
+    
+    // === Workspace ===
+    
+    /**
+     * Workspace mode: every project below the current directory, grouped by (loader, Minecraft version).
+     * Each group's dependency graph is resolved once, downloads are shared, and run/mods folders
+     * are filled in parallel.
+     */
+    private static void runWorkspace(String[] args) throws Exception {
+        Path root = Paths.get(".").toAbsolutePath().normalize();
+        String sub = args.length > 1 ? args[1].toLowerCase() : "info";
         
-        if (primaryFile == null) {
-            error("No downloadable file found");
+        List<ModInstall> projects = discoverProjects(root);
+        if (projects.isEmpty()) {
+            error("No Minecraft projects found below " + root);
             return;
         }
         
-        String downloadUrl = primaryFile.get("url").getAsString();
-        String fileName = primaryFile.get("filename").getAsString();
-        String versionNumber = version.get("version_number").getAsString();
-        long fileSize = primaryFile.get("size").getAsLong();
-        
-        // Define target file
-        Path targetFile = modsFolder.resolve(fileName);
-        
-        // 1. Check if already installed
-        if (Files.exists(targetFile)) {
-            warning("Already installed: " + fileName);
-            return;
+        Map<String, List<ModInstall>> groups = new TreeMap<>();
+        for (ModInstall project : projects) {
+            groups.computeIfAbsent(project.loader + " " + project.minecraftVersion, k -> new ArrayList<>()).add(project);
         }
         
-        // 2. Install dependencies FIRST
-        JsonArray dependencies = version.getAsJsonArray("dependencies");
-        if (dependencies != null && !dependencies.isEmpty()) {
-            boolean hasDeps = false;
-            for (JsonElement depEl : dependencies) {
-                JsonObject dep = depEl.getAsJsonObject();
-                String depType = dep.get("dependency_type").getAsString();
-                if ("required".equals(depType)) {
-                    String depProjectId = dep.has("project_id") ? dep.get("project_id").getAsString() : null;
-                    if (depProjectId != null) {
-                        if (!hasDeps) {
-                            System.out.println();
-                            info("Installing required dependencies...");
-                            hasDeps = true;
-                        }
-                        try {
-                            JsonObject depProject = httpGetJson(MODRINTH_API + "/project/" + depProjectId);
-                            String depSlug = depProject.get("slug").getAsString();
-                            System.out.println();
-                            installMod(depSlug);
-                        } catch (Exception e) {
-                            warning("Could not resolve dependency: " + depProjectId);
-                        }
-                    }
+        printWorkspace(root, projects.size(), groups);
+        
+        switch (sub) {
+            case "info", "status" -> {}
+            case "install", "i", "add" -> {
+                if (args.length < 3) {
+                    error("Usage: modinstall workspace install <mod-name> [mod-name2] ...");
+                    return;
                 }
+                installWorkspace(root, groups, Arrays.copyOfRange(args, 2, args.length));
             }
-            if (hasDeps) {
-                System.out.println();
-                info("Now installing " + BOLD + title + RESET + "...");
-            }
+            default -> error("Unknown workspace command: " + args[1]);
         }
-        
-        // 3. Download main mod
-        step("Downloading " + BOLD + fileName + RESET + DIM + " (" + formatSize(fileSize) + ")" + RESET);
-        downloadFileWithProgress(downloadUrl, targetFile, fileSize);
-        
-        success(BOLD + title + RESET + " " + GREEN + "v" + versionNumber + RESET + " installed!");
     }
     
     /**
-     * Download file with progress bar
+     * Find every mod project below root. Properties are inherited from parent folders,
+     * and aggregator builds (those with subprojects) are skipped.
      */
-    private void downloadFileWithProgress(String urlString, Path target, long expectedSize) throws IOException {
-        URL url = new URL(urlString);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestProperty("User-Agent", USER_AGENT);
+    private static List<ModInstall> discoverProjects(Path root) throws IOException {
+        List<Path> candidates = new ArrayList<>();
         
-        try (InputStream in = conn.getInputStream();
-             OutputStream out = Files.newOutputStream(target)) {
-            
-            byte[] buffer = new byte[8192];
-            long downloaded = 0;
-            int bytesRead;
-            int lastPercent = -1;
+        Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), 8, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                String name = dir.equals(root) ? "" : dir.getFileName().toString();
+                if (name.startsWith(".") || WORKSPACE_SKIP.contains(name)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                if (Files.exists(dir.resolve("gradle.properties"))
+                        || Files.exists(dir.resolve("build.gradle"))
+                        || Files.exists(dir.resolve("build.gradle.kts"))) {
+                    candidates.add(dir);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        
+        List<ModInstall> projects = new ArrayList<>();
+        for (Path dir : candidates) {
+            boolean aggregator = candidates.stream().anyMatch(c -> !c.equals(dir) && c.startsWith(dir));
+            if (aggregator) continue;
             
-            while ((bytesRead = in.read(buffer)) != -1) {
-                out.write(buffer, 0, bytesRead);
-                downloaded += bytesRead;
-                
-                int percent = (int) ((downloaded * 100) / expectedSize);
-                if (percent != lastPercent && percent % 5 == 0) {
-                    printProgressBar(percent, downloaded, expectedSize);
-                    lastPercent = percent;
+            // Inherit gradle.properties from the workspace root down to the project
+            Deque<Path> chain = new ArrayDeque<>();
+            for (Path p = dir; p != null && p.startsWith(root); p = p.getParent()) {
+                chain.push(p);
+            }
+            Properties props = new Properties();
+            for (Path p : chain) {
+                Path file = p.resolve("gradle.properties");
+                if (Files.exists(file)) {
+                    try (InputStream is = Files.newInputStream(file)) {
+                        props.load(is);
+                    }
                 }
             }
             
-            // Final progress
-            printProgressBar(100, expectedSize, expectedSize);
-            System.out.println();
+            ModInstall project = new ModInstall();
+            project.loadProject(dir, props);
+            if (project.minecraftVersion == null) continue;
+            
+            // Multi-loader layouts name their subprojects after the loader
+            String dirName = dir.getFileName().toString().toLowerCase();
+            if (ProjectSettings.LOADERS.contains(dirName)) {
+                project.loader = dirName;
+            }
+            projects.add(project);
         }
+        return projects;
     }
     
-    private void printProgressBar(int percent, long downloaded, long total) {
-        int barWidth = 30;
-        int filled = (int) ((percent / 100.0) * barWidth);
-        
-        // Characters for progress bar
-        String filledChar = useUnicode ? "█" : "#";
-        String partialChar = useUnicode ? "▓" : "=";
-        String emptyChar = useUnicode ? "░" : ".";
-        
-        StringBuilder bar = new StringBuilder();
-        bar.append("\r     ");
-        bar.append(BRIGHT_MAGENTA).append("[");
-        
-        for (int i = 0; i < barWidth; i++) {
-            if (i < filled) {
-                bar.append(BRIGHT_CYAN).append(filledChar);
-            } else if (i == filled) {
-                bar.append(BRIGHT_CYAN).append(partialChar);
-            } else {
-                bar.append(DIM).append(emptyChar);
+    private static void printWorkspace(Path root, int projectCount, Map<String, List<ModInstall>> groups) {
+        OUT.println();
+        OUT.println("  " + BOLD + WHITE + "Workspace" + RESET + DIM + " (" + projectCount + " projects, "
+            + groups.size() + " groups)" + RESET);
+        OUT.println("  " + DIM + repeat(useUnicode ? "─" : "-", 55) + RESET);
+        
+        for (List<ModInstall> group : groups.values()) {
+            ModInstall first = group.get(0);
+            OUT.println("    " + BRIGHT_YELLOW + BULLET + RESET + " " + BOLD + first.capitalize(first.loader) + RESET
+                + " " + BRIGHT_GREEN + first.minecraftVersion + RESET);
+            for (ModInstall project : group) {
+                String path = root.equals(project.projectRoot) ? "." : root.relativize(project.projectRoot).toString();
+                OUT.println("       " + DIM + path + RESET);
             }
         }
+        OUT.println();
+    }
+    
+    private static void installWorkspace(Path root, Map<String, List<ModInstall>> groups, String[] mods) throws IOException {
+        List<ModInstall> projects = groups.values().stream().flatMap(List::stream).toList();
+        Map<ProjectSettings, List<String>> added = await(CLIENT.installAll(
+            projects.stream().map(ModInstall::settings).toList(), Arrays.asList(mods), new ConsoleProgress(false)));
+        
+        OUT.println();
+        for (ModInstall project : projects) {
+            String path = root.equals(project.projectRoot) ? "." : root.relativize(project.projectRoot).toString();
+            success(BOLD + path + RESET + DIM + " +" + added.get(project.settings()).size() + " mod(s)" + RESET);
+        }
+    }
+    
+    // === Modpacks ===
+    
+    /**
+     * Import a Modrinth modpack (.mrpack) into the run folder
+     */
+    private void importPack(Path packFile) throws IOException {
+        ImportResult result = await(CLIENT.importPack(settings(), packFile, new ConsoleProgress(false)));
+        
+        OUT.println();
+        info("Downloaded " + BOLD + result.downloaded() + RESET + ", up to date " + BOLD + result.upToDate() + RESET
+            + ", overrides " + BOLD + result.overrides() + RESET);
+        if (result.failed() > 0) {
+            warning(result.failed() + " file(s) could not be downloaded.");
+        } else {
+            success("Modpack imported into " + settings().runFolder());
+        }
+    }
+    
+    /**
+     * Export the mods folder as a Modrinth modpack (.mrpack) or a plain JSON modlist
+     */
+    private void exportMods(Path output) throws IOException {
+        ExportResult result = await(CLIENT.export(settings(), output, new ConsoleProgress(false)));
+        if (result.mods() == 0) {
+            info("No mods installed in " + modsFolder);
+            return;
+        }
         
-        bar.append(BRIGHT_MAGENTA).append("]").append(RESET);
-        bar.append(String.format(" %3d%% ", percent));
-        bar.append(DIM).append(formatSize(downloaded)).append("/").append(formatSize(total)).append(RESET);
-        
-        System.out.print(bar);
+        info("Matched " + BOLD + (result.mods() - result.unmatched()) + RESET + " of " + result.mods() + " mods on Modrinth");
+        if (result.unmatched() > 0) {
+            String name = output.getFileName().toString().toLowerCase();
+            warning(result.unmatched() + " mod(s) not on Modrinth"
+                + (name.endsWith(".json") ? ", listed as unknown" : ", bundled as overrides"));
+        }
+        success("Exported " + BOLD + result.mods() + RESET + " mods to " + output);
     }
     
     /**
-     * Search for mods on Modrinth
+     * Search for mods on Modrinth. The client prefetches what installing a top hit or opening
+     * the next page needs while the page renders.
      */
-    private void searchMods(String query) throws IOException {
+    private void searchMods(String query, int limit, int page) throws IOException {
         step("Searching for " + BOLD + "\"" + query + "\"" + RESET + "...");
-        System.out.println();
+        OUT.println();
         
-        String facets = "[[\"categories:" + loader + "\"],[\"versions:" + minecraftVersion + "\"],[\"project_type:mod\"]]";
-        String searchUrl = MODRINTH_API + "/search?query=" + URLEncoder.encode(query, "UTF-8")
-            + "&facets=" + URLEncoder.encode(facets, "UTF-8")
-            + "&limit=10";
-        
-        JsonObject result = httpGetJson(searchUrl);
-        JsonArray hits = result.getAsJsonArray("hits");
+        int offset = (page - 1) * limit;
+        SearchPage result = await(CLIENT.search(settings(), query, limit, offset));
+        List<SearchHit> hits = result.hits();
         
         if (hits.isEmpty()) {
-            error("No mods found for '" + query + "'");
+            error(page > 1 ? "No more results for '" + query + "'" : "No mods found for '" + query + "'");
             return;
         }
         
-        int total = result.get("total_hits").getAsInt();
-        System.out.println("  " + DIM + "Found " + RESET + BOLD + total + RESET + DIM + " results (showing top " + hits.size() + ")" + RESET);
-        System.out.println();
+        int total = result.totalHits();
+        int pages = (total + limit - 1) / limit;
+        
+        OUT.println("  " + DIM + "Found " + RESET + BOLD + total + RESET + DIM + " results (showing "
+            + (offset + 1) + "-" + (offset + hits.size()) + ", page " + page + " of " + pages + ")" + RESET);
+        OUT.println();
         
         for (int i = 0; i < hits.size(); i++) {
-            JsonObject hit = hits.get(i).getAsJsonObject();
-            String title = hit.get("title").getAsString();
-            String slug = hit.get("slug").getAsString();
-            String description = hit.get("description").getAsString();
-            int downloads = hit.get("downloads").getAsInt();
-            
-            System.out.println("  " + BRIGHT_MAGENTA + (i + 1) + "." + RESET + " " + BOLD + BRIGHT_CYAN + title + RESET + "  " + DIM + "(" + slug + ")" + RESET);
-            System.out.println("     " + DIM + truncate(description, 55) + RESET);
-            System.out.println("     " + formatDownloadsBadge(downloads));
-            System.out.println();
+            SearchHit hit = hits.get(i);
+            OUT.println("  " + BRIGHT_MAGENTA + (offset + i + 1) + "." + RESET + " " + BOLD + BRIGHT_CYAN + hit.title() + RESET + "  " + DIM + "(" + hit.slug() + ")" + RESET);
+            OUT.println("     " + DIM + truncate(hit.description(), 55) + RESET);
+            OUT.println("     " + formatDownloadsBadge(hit.downloads()));
+            OUT.println();
         }
         
-        System.out.println("  " + DIM + repeat(useUnicode ? "─" : "-", 55) + RESET);
-        System.out.println("  " + BRIGHT_YELLOW + "Tip:" + RESET + " Install with: " + BRIGHT_CYAN + "modinstall install " + YELLOW + "<slug>" + RESET);
-        System.out.println();
+        OUT.println("  " + DIM + repeat(useUnicode ? "─" : "-", 55) + RESET);
+        OUT.println("  " + BRIGHT_YELLOW + "Tip:" + RESET + " Install with: " + BRIGHT_CYAN + "modinstall install " + YELLOW + "<slug>" + RESET);
+        if (page < pages) {
+            OUT.println("  " + DIM + "     More results: modinstall search " + query + " --page " + (page + 1)
+                + (limit != 10 ? " --limit " + limit : "") + RESET);
+        }
+        OUT.println();
     }
     
-    private String formatDownloadsBadge(int downloads) {
+    private String formatDownloadsBadge(long downloads) {
         String formatted = formatDownloads(downloads);
         String color;
         
@@ -590,39 +868,35 @@ public class ModInstall {
             return;
         }
         
-        List<Path> mods = Files.list(modsFolder)
-            .filter(p -> p.toString().endsWith(".jar"))
-            .sorted()
-            .toList();
+        List<InstalledMod> mods = await(CLIENT.list(settings(), new ConsoleProgress(false)));
         
         if (mods.isEmpty()) {
             info("No mods installed in " + modsFolder);
             return;
         }
         
-        System.out.println("  " + BOLD + WHITE + "Installed Mods" + RESET + DIM + " (" + mods.size() + ")" + RESET);
-        System.out.println("  " + DIM + repeat(useUnicode ? "─" : "-", 55) + RESET);
-        System.out.println();
+        OUT.println("  " + BOLD + WHITE + "Installed Mods" + RESET + DIM + " (" + mods.size() + ")" + RESET);
+        OUT.println("  " + DIM + repeat(useUnicode ? "─" : "-", 55) + RESET);
+        OUT.println();
         
         long totalSize = 0;
-        for (Path mod : mods) {
-            long size = Files.size(mod);
-            totalSize += size;
-            String name = mod.getFileName().toString();
+        for (InstalledMod mod : mods) {
+            totalSize += mod.size();
+            String name = mod.fileName();
             
             // Try to extract mod name (before version number)
             String displayName = extractModName(name);
             
             String icon = useUnicode ? "■" : "*";
-            System.out.println("    " + BRIGHT_CYAN + icon + RESET + " " + BOLD + displayName + RESET);
-            System.out.println("       " + DIM + name + RESET);
-            System.out.println("       " + DIM + "Size: " + formatSize(size) + RESET);
-            System.out.println();
+            OUT.println("    " + BRIGHT_CYAN + icon + RESET + " " + BOLD + displayName + RESET);
+            OUT.println("       " + DIM + name + RESET);
+            OUT.println("       " + DIM + "Size: " + formatSize(mod.size()) + RESET);
+            OUT.println();
         }
         
-        System.out.println("  " + DIM + repeat(useUnicode ? "─" : "-", 55) + RESET);
-        System.out.println("  " + DIM + "Total: " + RESET + BOLD + mods.size() + RESET + DIM + " mods, " + formatSize(totalSize) + RESET);
-        System.out.println();
+        OUT.println("  " + DIM + repeat(useUnicode ? "─" : "-", 55) + RESET);
+        OUT.println("  " + DIM + "Total: " + RESET + BOLD + mods.size() + RESET + DIM + " mods, " + formatSize(totalSize) + RESET);
+        OUT.println();
     }
     
     private String extractModName(String filename) {
@@ -637,12 +911,24 @@ public class ModInstall {
     }
     
     /**
-     * Remove a mod
+     * Remove a mod, along with the dependencies nothing else installed needs anymore
      */
     private void removeMod(String modName) throws IOException {
-        List<Path> matches = Files.list(modsFolder)
-            .filter(p -> p.getFileName().toString().toLowerCase().contains(modName.toLowerCase()))
+        Progress progress = new ConsoleProgress(false);
+        List<InstalledMod> installed = await(CLIENT.list(settings(), progress));
+        String query = modName.toLowerCase();
+        
+        // An exact slug beats file names containing the query
+        List<String> matches = installed.stream()
+            .filter(mod -> query.equals(mod.slug()))
+            .map(InstalledMod::fileName)
             .toList();
+        if (matches.isEmpty()) {
+            matches = installed.stream()
+                .map(InstalledMod::fileName)
+                .filter(name -> name.toLowerCase().contains(query))
+                .toList();
+        }
             
         if (matches.isEmpty()) {
             error("No mod found matching '" + modName + "'");
@@ -651,68 +937,21 @@ public class ModInstall {
         
         if (matches.size() > 1) {
             warning("Multiple mods found:");
-            for (Path p : matches) {
-                System.out.println("  - " + p.getFileName());
+            for (String name : matches) {
+                OUT.println("  - " + name);
             }
             warning("Please be more specific.");
             return;
         }
         
-        Path targetMod = matches.get(0);
-        Set<String> dependencies = getDependenciesFromJar(targetMod);
-        
-        // List of files to remove: starts with the target mod
-        List<Path> toRemove = new ArrayList<>();
-        toRemove.add(targetMod);
-        
-        // Check finding orphans
-        if (!dependencies.isEmpty()) {
-            info("Checking for unused dependencies...");
-            
-            // Get all OTHER mods (excluding the target)
-            List<Path> otherMods = Files.list(modsFolder)
-                .filter(p -> !p.equals(targetMod) && p.toString().endsWith(".jar"))
-                .toList();
-            
-            // For each dependency of the target, check if it is used by any OTHER mod
-            for (String depId : dependencies) {
-                boolean isUsed = false;
-                for (Path other : otherMods) {
-                    Set<String> otherDeps = getDependenciesFromJar(other);
-                    if (otherDeps.contains(depId)) {
-                        isUsed = true;
-                        break;
-                    }
-                }
-                
-                if (!isUsed) {
-                    // Orphan detected! Find the JAR file corresponding to this depId
-                    // Heuristic: file name contains depId
-                    Optional<Path> orphanJar = Files.list(modsFolder)
-                        .filter(p -> !p.equals(targetMod)) // Don't re-add target
-                        .filter(p -> {
-                            String name = p.getFileName().toString().toLowerCase();
-                            String simpleId = depId.toLowerCase().replace("_", "-");
-                            return name.contains(simpleId);
-                        })
-                        .findFirst();
-                        
-                    if (orphanJar.isPresent()) {
-                         toRemove.add(orphanJar.get());
-                    }
-                }
-            }
+        List<String> removed = await(CLIENT.remove(settings(), matches.get(0), progress));
+        for (String name : removed) {
+            success("Removed: " + name);
         }
         
-        // Execute removal
-        for (Path p : toRemove) {
-            Files.delete(p);
-            success("Removed: " + p.getFileName());
-        }
-        
-        if (toRemove.size() > 1) {
-             System.out.println();
-             info("Removed " + (toRemove.size() - 1) + " unused dependencies.");
+        if (removed.size() > 1) {
+             OUT.println();
+             info("Removed " + (removed.size() - 1) + " unused dependencies.");
         }
     }
     
@@ -720,87 +959,24 @@ public class ModInstall {
      * Show project info
      */
     private void showProjectInfo() {
-        System.out.println();
-        System.out.println("  " + BOLD + WHITE + "Project Information" + RESET);
-        System.out.println("  " + DIM + "─────────────────────────────────────────────────────────" + RESET);
-        System.out.println();
-        System.out.println("    " + CYAN + "⛏" + RESET + "  Minecraft Version:  " + BOLD + BRIGHT_GREEN + minecraftVersion + RESET);
-        System.out.println("    " + MAGENTA + "⚡" + RESET + " Mod Loader:         " + BOLD + BRIGHT_YELLOW + capitalize(loader) + RESET);
-        System.out.println("    " + BLUE + "📁" + RESET + " Project Root:       " + DIM + projectRoot + RESET);
-        System.out.println("    " + GREEN + "📦" + RESET + " Mods Folder:        " + DIM + modsFolder + RESET);
-        System.out.println();
+        OUT.println();
+        OUT.println("  " + BOLD + WHITE + "Project Information" + RESET);
+        OUT.println("  " + DIM + "─────────────────────────────────────────────────────────" + RESET);
+        OUT.println();
+        OUT.println("    " + CYAN + "⛏" + RESET + "  Minecraft Version:  " + BOLD + BRIGHT_GREEN + minecraftVersion + RESET);
+        OUT.println("    " + MAGENTA + "⚡" + RESET + " Mod Loader:         " + BOLD + BRIGHT_YELLOW + capitalize(loader) + RESET);
+        OUT.println("    " + BLUE + "📁" + RESET + " Project Root:       " + DIM + projectRoot + RESET);
+        OUT.println("    " + GREEN + "📦" + RESET + " Mods Folder:        " + DIM + modsFolder + RESET);
+        OUT.println();
         
         // Count installed mods
         try {
             if (Files.exists(modsFolder)) {
                 long count = Files.list(modsFolder).filter(p -> p.toString().endsWith(".jar")).count();
-                System.out.println("    " + BRIGHT_CYAN + "🔢" + RESET + " Installed Mods:     " + BOLD + count + RESET);
+                OUT.println("    " + BRIGHT_CYAN + "🔢" + RESET + " Installed Mods:     " + BOLD + count + RESET);
             }
         } catch (IOException ignored) {}
-        System.out.println();
-    }
-    
-    // === HTTP Helpers ===
-    
-    private JsonObject httpGetJson(String urlString) throws IOException {
-        String response = httpGet(urlString);
-        return JsonParser.parseString(response).getAsJsonObject();
-    }
-    
-    private JsonArray httpGetJsonArray(String urlString) throws IOException {
-        String response = httpGet(urlString);
-        return JsonParser.parseString(response).getAsJsonArray();
-    }
-    
-    private String httpGet(String urlString) throws IOException {
-        int maxRetries = 3;
-        int retryDelay = 1000; // 1s start delay
-        
-        for (int i = 0; i <= maxRetries; i++) {
-            try {
-                URL url = new URL(urlString);
-                HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-                conn.setRequestMethod("GET");
-                conn.setRequestProperty("User-Agent", USER_AGENT);
-                conn.setRequestProperty("Accept", "application/json");
-                
-                int status = conn.getResponseCode();
-                
-                if (status >= 500 && status < 600) {
-                    if (i < maxRetries) {
-                        warning("Modrinth API unavailable (HTTP " + status + "). Retrying in " + (retryDelay / 1000) + "s...");
-                        try { Thread.sleep(retryDelay); } catch (InterruptedException ignored) {}
-                        retryDelay *= 2; // Exponential backoff
-                        continue;
-                    } else {
-                        throw new IOException("Modrinth API is down (HTTP " + status + "). Please try again later.");
-                    }
-                }
-                
-                if (status >= 400) {
-                     throw new IOException("API Error HTTP " + status + " for URL: " + urlString);
-                }
-                
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream()))) {
-                    StringBuilder sb = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        sb.append(line);
-                    }
-                    return sb.toString();
-                }
-            } catch (IOException e) {
-                // Only retry on network IO errors or 5xx (handled above)
-                if (i < maxRetries) {
-                    warning("Connection failed (" + e.getMessage() + "). Retrying...");
-                    try { Thread.sleep(retryDelay); } catch (InterruptedException ignored) {}
-                    retryDelay *= 2;
-                } else {
-                     throw e;
-                }
-            }
-        }
-        return null; // Should not reach here
+        OUT.println();
     }
     
     // === Formatting Helpers ===
@@ -811,190 +987,153 @@ public class ModInstall {
     }
 
     /**
-     * Clean unused dependencies
+     * Clean unused dependencies: everything no mod that was asked for (or put there by hand)
+     * needs, directly or through other libraries. Orphaned chains go in one pass.
      */
-    private void cleanUnused() throws IOException {
+    private void cleanUnused(boolean dryRun) throws IOException {
         info("Analyzing installed mods for unused dependencies...");
         
-        List<Path> allMods = Files.list(modsFolder)
-            .filter(p -> p.toString().endsWith(".jar"))
-            .toList();
-            
-        if (allMods.isEmpty()) {
-            System.out.println("  No mods installed.");
+        // One pass, so what is listed is exactly what was removed
+        List<String> unused = await(CLIENT.clean(settings(), dryRun, new ConsoleProgress(false)));
+        if (unused.isEmpty()) {
+            success("No unused libraries found.");
             return;
         }
         
-        // 1. Map each JAR to its ModID and its Dependencies
-        Map<Path, String> jarToId = new HashMap<>();
-        Map<Path, Set<String>> jarToDeps = new HashMap<>();
-        
-        for (Path jar : allMods) {
-            String modId = getModIdFromJar(jar);
-            if (modId != null) {
-                jarToId.put(jar, modId);
+        OUT.println();
+        if (dryRun) {
+            warning("Found " + unused.size() + " orphan libraries:");
+            for (String name : unused) {
+                OUT.println("  " + DIM + "- " + RESET + name);
             }
-            jarToDeps.put(jar, getDependenciesFromJar(jar));
-        }
-        
-        // 2. Identify usage count for each ModID
-        Map<String, Integer> usageCount = new HashMap<>();
-        for (Set<String> deps : jarToDeps.values()) {
-            for (String dep : deps) {
-                usageCount.put(dep, usageCount.getOrDefault(dep, 0) + 1);
-            }
-        }
-        
-        // 3. Find JARs that have ModID with usage == 0 (Roots)
-        List<Path> candidates = new ArrayList<>();
-        for (Path jar : allMods) {
-            String id = jarToId.get(jar);
-            // If we couldn't identify the ID, skip it (safe behavior)
-            if (id == null) continue;
-            
-            // If no one depends on this ID
-            if (usageCount.getOrDefault(id, 0) == 0) {
-                // Heuristic: Is it likely a library?
-                if (isLikelyLibrary(id, jar.getFileName().toString())) {
-                    candidates.add(jar);
-                }
-            }
-        }
-        
-        if (candidates.isEmpty()) {
-            success("No unused libraries found.");
+            OUT.println();
+            info("Dry run, nothing removed.");
             return;
         }
         
-        System.out.println();
-        warning("Found " + candidates.size() + " potential orphan libraries:");
-        for (Path p : candidates) {
-            System.out.println("  " + DIM + "- " + RESET + p.getFileName());
-        }
-        System.out.println();
-        
-        info("Removing orphans...");
-        for (Path p : candidates) {
-            Files.delete(p);
-            success("Removed: " + p.getFileName());
+        for (String name : unused) {
+            success("Removed: " + name);
         }
     }
     
-    private boolean isLikelyLibrary(String id, String filename) {
-        String s = (id + filename).toLowerCase();
-        return s.contains("lib") || s.contains("api") || s.contains("core") || 
-               s.contains("config") || s.contains("cloth") || s.contains("balm") || 
-               s.contains("bookshelf") || s.contains("architectury");
-    }
-
-    private String getModIdFromJar(Path jarPath) {
-        try (JarFile jar = new JarFile(jarPath.toFile())) {
-            // 1. Fabric
-            JarEntry fabricEntry = jar.getJarEntry("fabric.mod.json");
-            if (fabricEntry != null) {
-                try (InputStream is = jar.getInputStream(fabricEntry);
-                     InputStreamReader reader = new InputStreamReader(is)) {
-                    JsonObject json = JsonParser.parseReader(reader).getAsJsonObject();
-                    return json.get("id").getAsString();
-                }
-            }
-            // 2. NeoForge/Forge
-            JarEntry forgeEntry = jar.getJarEntry("META-INF/mods.toml");
-            if (forgeEntry == null) forgeEntry = jar.getJarEntry("META-INF/neoforge.mods.toml");
+    // === Watch ===
+    
+    /**
+     * Keep the dependency graph of the mods folder live: on every change only the changed jar
+     * is re-read, and missing required dependencies and orphan libraries are reported.
+     * With autoFetch, missing dependencies are installed from Modrinth.
+     */
+    private void watchMods(boolean autoFetch) throws IOException, InterruptedException {
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            // Register before the first scan, so a jar dropped in meanwhile still raises an event
+            modsFolder.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
             
-            if (forgeEntry != null) {
-                try (InputStream is = jar.getInputStream(forgeEntry)) {
-                    Scanner scanner = new Scanner(is);
-                    while (scanner.hasNextLine()) {
-                        String line = scanner.nextLine().trim();
-                        if (line.startsWith("modId")) {
-                            Matcher m = Pattern.compile("modId\\s*=\\s*\"([^\"]+)\"").matcher(line);
-                            if (m.find()) return m.group(1);
-                        }
-                    }
+            ModGraph graph = new ModGraph();
+            try (Stream<Path> files = Files.list(modsFolder)) {
+                for (Path jar : files.filter(p -> p.toString().endsWith(".jar")).toList()) {
+                    graph.put(jar, JarMeta.read(jar));
                 }
             }
-        } catch (Exception e) {}
-        return null; // Could not identify
-    }
-
-    private Set<String> getDependenciesFromJar(Path jarPath) {
-        Set<String> deps = new HashSet<>();
-        try (JarFile jar = new JarFile(jarPath.toFile())) {
-            
-            // 1. Try Fabric/Quilt (fabric.mod.json)
-            JarEntry fabricEntry = jar.getJarEntry("fabric.mod.json");
             
-            // 2. Try Forge/NeoForge (META-INF/mods.toml or neoforge.mods.toml)
-            JarEntry forgeEntry = jar.getJarEntry("META-INF/mods.toml");
-            if (forgeEntry == null) forgeEntry = jar.getJarEntry("META-INF/neoforge.mods.toml");
+            Set<String> fetched = new HashSet<>();
+            List<Set<String>> lastReport = new ArrayList<>();
+            reportGraph(graph, autoFetch, fetched, lastReport);
+            info("Watching " + DIM + modsFolder + RESET + " (Ctrl+C to stop)");
             
-            if (fabricEntry != null) {
-                try (InputStream is = jar.getInputStream(fabricEntry);
-                     InputStreamReader reader = new InputStreamReader(is)) {
-                    JsonObject json = JsonParser.parseReader(reader).getAsJsonObject();
-                    if (json.has("depends")) {
-                        JsonObject depends = json.getAsJsonObject("depends");
-                        for (String depId : depends.keySet()) {
-                            if (!isPlatformId(depId)) {
-                                deps.add(depId);
-                            }
+            while (true) {
+                WatchKey key = watcher.take();
+                Thread.sleep(WATCH_SETTLE_MS);
+                
+                // Collect everything that changed meanwhile, each jar is re-read once
+                Set<Path> changed = new LinkedHashSet<>();
+                boolean overflow = false;
+                do {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflow = true;
+                        } else {
+                            changed.add(modsFolder.resolve((Path) event.context()));
                         }
                     }
-                }
-            } else if (forgeEntry != null) {
-                 try (InputStream is = jar.getInputStream(forgeEntry)) {
-                    // Simple TOML line scanner
-                    Scanner scanner = new Scanner(is);
-                    String pendingModId = null;
-                    boolean pendingRequired = false;
-                    
-                    while (scanner.hasNextLine()) {
-                        String line = scanner.nextLine().trim();
-                        if (line.startsWith("#") || line.isEmpty()) continue;
-                        
-                        // Detect [[dependencies.modid]]
-                        if (line.startsWith("[[dependencies")) {
-                            if (pendingModId != null && pendingRequired && !isPlatformId(pendingModId)) {
-                                deps.add(pendingModId);
-                            }
-                            pendingModId = null;
-                            pendingRequired = false;
-                        } else if (line.startsWith("modId")) {
-                            Matcher m = Pattern.compile("modId\\s*=\\s*\"([^\"]+)\"").matcher(line);
-                            if (m.find()) {
-                                pendingModId = m.group(1);
-                            }
-                        } else if (line.startsWith("mandatory")) {
-                            if (line.contains("true")) pendingRequired = true;
-                        } else if (line.startsWith("type")) {
-                            if (line.contains("required")) pendingRequired = true;
-                        }
+                    key.reset();
+                } while ((key = watcher.poll()) != null);
+                
+                if (overflow) {
+                    try (Stream<Path> files = Files.list(modsFolder)) {
+                        files.filter(p -> p.toString().endsWith(".jar")).forEach(changed::add);
                     }
-                    if (pendingModId != null && pendingRequired && !isPlatformId(pendingModId)) {
-                        deps.add(pendingModId);
+                    new ArrayList<>(graph.jars.keySet()).forEach(changed::add);
+                }
+                
+                for (Path jar : changed) {
+                    if (!jar.toString().endsWith(".jar")) continue;
+                    if (Files.exists(jar)) {
+                        boolean known = graph.jars.containsKey(jar);
+                        graph.put(jar, JarMeta.read(jar));
+                        if (!overflow) OUT.println("  " + (known ? YELLOW + "~" : BRIGHT_GREEN + "+") + RESET + " " + jar.getFileName());
+                    } else if (graph.jars.containsKey(jar)) {
+                        graph.remove(jar);
+                        if (!overflow) OUT.println("  " + BRIGHT_RED + "-" + RESET + " " + jar.getFileName());
                     }
-                 }
+                }
+                
+                reportGraph(graph, autoFetch, fetched, lastReport);
             }
-            
-        } catch (Exception e) {
-            // Ignore errors silently in production
         }
-        return deps;
     }
     
-    private boolean isPlatformId(String id) {
-        return id.equals("minecraft") || id.equals("java") || 
-               id.equals("fabricloader") || id.equals("forge") || id.equals("neoforge");
+    /**
+     * Print unmet dependencies and orphans when they differ from the last report
+     */
+    private void reportGraph(ModGraph graph, boolean autoFetch, Set<String> fetched, List<Set<String>> lastReport)
+            throws IOException {
+        Set<String> unmet = graph.unmet();
+        // The libraries clean would remove, nothing reachable from a mod that was asked for needs them
+        Set<String> orphans = new TreeSet<>(await(CLIENT.clean(settings(), true, new ConsoleProgress(false))));
+        if (lastReport.equals(List.of(unmet, orphans))) {
+            return;
+        }
+        lastReport.clear();
+        lastReport.add(unmet);
+        lastReport.add(orphans);
+        
+        if (unmet.isEmpty() && orphans.isEmpty()) {
+            success("All required dependencies are present.");
+        }
+        for (String dep : unmet) {
+            List<String> neededBy = graph.jars.entrySet().stream()
+                .filter(e -> e.getValue().dependencies().contains(dep))
+                .map(e -> e.getKey().getFileName().toString())
+                .sorted()
+                .toList();
+            warning("Missing dependency " + BOLD + dep + RESET + YELLOW + " (required by " + String.join(", ", neededBy) + ")");
+        }
+        for (String orphan : orphans) {
+            info("Unused library: " + orphan);
+        }
+        
+        if (autoFetch) {
+            Progress progress = new ConsoleProgress(true);
+            for (String dep : unmet) {
+                // Try each ID once, the new jar shows up as a regular change
+                if (!fetched.add(dep)) continue;
+                try {
+                    installMod(dep, progress);
+                } catch (Exception e) {
+                    warning("Could not fetch " + dep + ": " + e.getMessage());
+                }
+            }
+        }
     }
     
-    private String formatDownloads(int downloads) {
+    private String formatDownloads(long downloads) {
         if (downloads >= 1_000_000) return String.format("%.1fM", downloads / 1_000_000.0);
         if (downloads >= 1_000) return String.format("%.1fK", downloads / 1_000.0);
         return String.valueOf(downloads);
     }
     
-    private String formatSize(long bytes) {
+    static String formatSize(long bytes) {
         if (bytes >= 1_000_000) return String.format("%.1f MB", bytes / 1_000_000.0);
         if (bytes >= 1_000) return String.format("%.1f KB", bytes / 1_000.0);
         return bytes + " B";
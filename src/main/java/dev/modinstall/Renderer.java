@@ -0,0 +1,236 @@
+package dev.modinstall;
+
+import com.google.gson.JsonObject;
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Owns stdout. Any thread may queue lines or advance a progress bar; a single render thread
+ * writes queued lines and redraws the active bars at a fixed frame rate, one write per frame.
+ *
+ * On a terminal the bars are redrawn in place. When stdout is not a terminal (CI logs, pipes)
+ * output is plain text without colors or bars, or JSON lines if MODINSTALL_OUTPUT=json.
+ */
+final class Renderer {
+
+    enum Mode { ANSI, PLAIN, JSON }
+
+    private static final long FRAME_MS = 66; // ~15 fps
+    private static final int BAR_WIDTH = 30;
+
+    private static final String RESET = "\u001B[0m";
+    private static final String DIM = "\u001B[2m";
+    private static final String BRIGHT_MAGENTA = "\u001B[95m";
+    private static final String BRIGHT_CYAN = "\u001B[96m";
+    private static final String ANSI_PATTERN = "\u001B\\[[;\\d]*m";
+
+    /**
+     * A download's progress. The downloading thread only adds to the counter,
+     * all formatting happens on the render thread.
+     */
+    static final class Bar {
+        private final String label;
+        private final long total;
+        private final AtomicLong done = new AtomicLong();
+        private volatile int state; // 0 = running, 1 = finished, 2 = failed
+
+        private Bar(String label, long total) {
+            this.label = label;
+            this.total = total;
+        }
+
+        void advance(long bytes) {
+            done.addAndGet(bytes);
+        }
+
+        void finish() {
+            state = 1;
+        }
+
+        /**
+         * Drop the bar without a final line, unless it already finished
+         */
+        void fail() {
+            if (state == 0) state = 2;
+        }
+    }
+
+    private record Line(String kind, String text, String message) {}
+
+    private final Mode mode;
+    private final boolean unicode;
+    private final PrintStream out = System.out;
+    private final BlockingQueue<Line> lines = new LinkedBlockingQueue<>();
+    private final List<Bar> bars = new CopyOnWriteArrayList<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // Render thread only
+    private final StringBuilder frame = new StringBuilder(4096);
+    private int drawnBars;
+
+    Renderer(Mode mode, boolean unicode) {
+        this.mode = mode;
+        this.unicode = unicode;
+        this.thread = new Thread(this::loop, "renderer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * ANSI on a terminal, plain text otherwise. MODINSTALL_OUTPUT=ansi|plain|json overrides.
+     */
+    static Mode detectMode() {
+        String forced = System.getenv("MODINSTALL_OUTPUT");
+        if (forced != null) {
+            for (Mode mode : Mode.values()) {
+                if (mode.name().equalsIgnoreCase(forced)) return mode;
+            }
+        }
+        return System.console() != null ? Mode.ANSI : Mode.PLAIN;
+    }
+
+    void println() {
+        println("");
+    }
+
+    void println(String text) {
+        lines.add(new Line("text", text, text));
+    }
+
+    /**
+     * A styled line with its level (info, success, warning, error, step) and bare message,
+     * which is what JSON output reports
+     */
+    void println(String kind, String text, String message) {
+        lines.add(new Line(kind, text, message));
+    }
+
+    Bar bar(String label, long total) {
+        Bar bar = new Bar(label, total);
+        bars.add(bar);
+        return bar;
+    }
+
+    /**
+     * Stop the render thread after everything queued has been written
+     */
+    void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void loop() {
+        while (running) {
+            try {
+                long start = System.nanoTime();
+                // Wake up early for new lines, otherwise tick at the frame rate while bars are active
+                Line first = lines.poll(FRAME_MS, TimeUnit.MILLISECONDS);
+                render(first);
+                if (!bars.isEmpty()) {
+                    long elapsed = (System.nanoTime() - start) / 1_000_000;
+                    if (elapsed < FRAME_MS) Thread.sleep(FRAME_MS - elapsed);
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        render(null);
+        out.flush();
+    }
+
+    private void render(Line first) {
+        frame.setLength(0);
+
+        // Clear the bars drawn by the previous frame so new lines appear above them
+        if (mode == Mode.ANSI && drawnBars > 0) {
+            frame.append("\u001B[").append(drawnBars).append("A\r\u001B[J");
+            drawnBars = 0;
+        }
+
+        // Finished bars first, the line reporting a download comes after its bar
+        for (Bar bar : bars) {
+            if (bar.state == 0) continue;
+            bars.remove(bar);
+            if (bar.state == 1) {
+                if (mode == Mode.ANSI) {
+                    // A finished bar stays on screen as a regular line
+                    appendBar(bar);
+                } else if (mode == Mode.JSON) {
+                    JsonObject event = new JsonObject();
+                    event.addProperty("type", "download");
+                    event.addProperty("file", bar.label);
+                    event.addProperty("bytes", bar.done.get());
+                    frame.append(event).append('\n');
+                }
+            }
+        }
+
+        if (first != null) {
+            appendLine(first);
+        }
+        Line line;
+        while ((line = lines.poll()) != null) {
+            appendLine(line);
+        }
+
+        if (mode == Mode.ANSI) {
+            for (Bar bar : bars) {
+                appendBar(bar);
+                drawnBars++;
+            }
+        }
+
+        if (frame.length() > 0) {
+            out.print(frame);
+            out.flush();
+        }
+    }
+
+    private void appendLine(Line line) {
+        switch (mode) {
+            case ANSI -> frame.append(line.text());
+            case PLAIN -> frame.append(line.text().replaceAll(ANSI_PATTERN, ""));
+            case JSON -> {
+                String text = line.message().replaceAll(ANSI_PATTERN, "").strip();
+                if (text.isEmpty()) return;
+                JsonObject event = new JsonObject();
+                event.addProperty("type", line.kind());
+                event.addProperty("message", text);
+                frame.append(event);
+            }
+        }
+        frame.append('\n');
+    }
+
+    private void appendBar(Bar bar) {
+        long total = bar.total > 0 ? bar.total : Math.max(1, bar.done.get());
+        long done = bar.state == 1 ? total : Math.min(bar.done.get(), total);
+        int percent = (int) (done * 100 / total);
+        int filled = percent * BAR_WIDTH / 100;
+
+        frame.append("     ").append(BRIGHT_MAGENTA).append('[');
+        for (int i = 0; i < BAR_WIDTH; i++) {
+            if (i < filled) {
+                frame.append(BRIGHT_CYAN).append(unicode ? "█" : "#");
+            } else if (i == filled) {
+                frame.append(BRIGHT_CYAN).append(unicode ? "▓" : "=");
+            } else {
+                frame.append(DIM).append(unicode ? "░" : ".");
+            }
+        }
+        frame.append(BRIGHT_MAGENTA).append(']').append(RESET).append(' ');
+        if (percent < 100) frame.append(' ');
+        if (percent < 10) frame.append(' ');
+        frame.append(percent).append("% ");
+        frame.append(DIM).append(ModInstall.formatSize(done)).append('/').append(ModInstall.formatSize(total));
+        frame.append("  ").append(bar.label).append(RESET).append('\n');
+    }
+}